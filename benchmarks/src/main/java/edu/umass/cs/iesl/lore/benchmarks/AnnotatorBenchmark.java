@@ -0,0 +1,60 @@
+package edu.umass.cs.iesl.lore.benchmarks;
+
+import edu.umass.cs.iesl.lore.CoreNLPAnnotator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end documents per second of {@link CoreNLPAnnotator} (full pipeline, no annotation cache) on the sample
+ * corpus. Every operation annotates the next document of the corpus.
+ *
+ * @author kedarb
+ * @since 01/22/12
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 20)
+@Measurement(iterations = 5, time = 20)
+@Fork(value = 1, jvmArgs = {"-Xmx4G"})
+public class AnnotatorBenchmark {
+    SampleCorpus corpus;
+    CoreNLPAnnotator annotator;
+    int next = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        corpus = new SampleCorpus();
+        annotator = SampleCorpus.newAnnotator();
+    }
+
+    int nextDocument() {
+        int i = next;
+        next = (next + 1) % corpus.size();
+        return i;
+    }
+
+    @Benchmark
+    public List<String> entityMentionPatterns() {
+        int i = nextDocument();
+        return annotator.getEntityMentionPatterns(corpus.filePaths[i], corpus.texts[i]);
+    }
+
+    @Benchmark
+    public List<String> relationMentionPatterns() {
+        int i = nextDocument();
+        return annotator.getRelationMentionPatterns(corpus.filePaths[i], corpus.texts[i]);
+    }
+}
@@ -0,0 +1,129 @@
+package edu.umass.cs.iesl.lore.benchmarks;
+
+import edu.umass.cs.iesl.lore.AnnotatedDocument;
+import edu.umass.cs.iesl.lore.CoreNLPUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of the {@link CoreNLPUtils} helpers used by pattern extraction, on the pre-annotated sample
+ * corpus. Every call takes the next fixture (mention, mention pair or token) in turn. The dependency indexes are
+ * built once, so these are steady-state costs; {@link PatternExtractionBenchmark} includes building them.
+ *
+ * @author kedarb
+ * @since 01/22/12
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4G"})
+public class CoreNLPUtilsBenchmark {
+    // all coref mentions
+    AnnotatedDocument[] mentionDocuments;
+    AnnotatedDocument.Mention[] mentions;
+    int nextMention = 0;
+
+    // mentions of different entities in the same sentence, as relation extraction pairs them
+    AnnotatedDocument[] pairDocuments;
+    AnnotatedDocument.Mention[] pairSources;
+    AnnotatedDocument.Mention[] pairDestinations;
+    int nextPair = 0;
+
+    // all tokens
+    AnnotatedDocument.Sentence[] tokenSentences;
+    int[] tokenIndexes;
+    int nextToken = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        List<AnnotatedDocument> mentionDocs = new ArrayList<AnnotatedDocument>();
+        List<AnnotatedDocument.Mention> mentionList = new ArrayList<AnnotatedDocument.Mention>();
+        List<AnnotatedDocument> pairDocs = new ArrayList<AnnotatedDocument>();
+        List<AnnotatedDocument.Mention> sources = new ArrayList<AnnotatedDocument.Mention>();
+        List<AnnotatedDocument.Mention> destinations = new ArrayList<AnnotatedDocument.Mention>();
+        List<AnnotatedDocument.Sentence> sentences = new ArrayList<AnnotatedDocument.Sentence>();
+        List<Integer> indexes = new ArrayList<Integer>();
+
+        for (AnnotatedDocument document : new SampleCorpus().annotate()) {
+            for (AnnotatedDocument.Chain chain : document.chains) {
+                for (AnnotatedDocument.Mention mention : chain.mentions) {
+                    mentionDocs.add(document);
+                    mentionList.add(mention);
+                    for (AnnotatedDocument.Chain other : document.chains) {
+                        if (other == chain) continue;
+                        for (AnnotatedDocument.Mention dest : other.mentions) {
+                            if (dest.sentNum != mention.sentNum) continue;
+                            pairDocs.add(document);
+                            sources.add(mention);
+                            destinations.add(dest);
+                        }
+                    }
+                }
+            }
+            for (AnnotatedDocument.Sentence sentence : document.sentences) {
+                for (int i = 1; i <= sentence.numTokens(); i++) {
+                    sentences.add(sentence);
+                    indexes.add(i);
+                }
+            }
+        }
+        if (mentionList.isEmpty() || sources.isEmpty())
+            throw new IllegalStateException("Sample corpus has no coref mentions to benchmark!!");
+
+        mentionDocuments = mentionDocs.toArray(new AnnotatedDocument[mentionDocs.size()]);
+        mentions = mentionList.toArray(new AnnotatedDocument.Mention[mentionList.size()]);
+        pairDocuments = pairDocs.toArray(new AnnotatedDocument[pairDocs.size()]);
+        pairSources = sources.toArray(new AnnotatedDocument.Mention[sources.size()]);
+        pairDestinations = destinations.toArray(new AnnotatedDocument.Mention[destinations.size()]);
+        tokenSentences = sentences.toArray(new AnnotatedDocument.Sentence[sentences.size()]);
+        tokenIndexes = new int[indexes.size()];
+        for (int i = 0; i < tokenIndexes.length; i++) tokenIndexes[i] = indexes.get(i);
+    }
+
+    int nextMention() {
+        int i = nextMention;
+        nextMention = (nextMention + 1) % mentions.length;
+        return i;
+    }
+
+    @Benchmark
+    public List<String> getEdgeWalk() {
+        int i = nextPair;
+        nextPair = (nextPair + 1) % pairSources.length;
+        return CoreNLPUtils.getEdgeWalk(pairSources[i], pairDestinations[i], pairDocuments[i], true);
+    }
+
+    @Benchmark
+    public List<String> getDependencies() {
+        int i = nextMention();
+        return CoreNLPUtils.getDependencies(mentions[i], mentionDocuments[i], CoreNLPUtils.ALLOWED_DEP_TAGS, true);
+    }
+
+    @Benchmark
+    public String getMentionSpanForNER() {
+        int i = nextMention();
+        return CoreNLPUtils.getMentionSpanForNER(mentions[i], mentionDocuments[i]);
+    }
+
+    @Benchmark
+    public int getIndexedWord() {
+        int i = nextToken;
+        nextToken = (nextToken + 1) % tokenIndexes.length;
+        return CoreNLPUtils.getIndexedWord(tokenIndexes[i], tokenSentences[i]);
+    }
+}
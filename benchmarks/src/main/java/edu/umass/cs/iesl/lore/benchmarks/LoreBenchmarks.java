@@ -0,0 +1,28 @@
+package edu.umass.cs.iesl.lore.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks (all of them, or those matching the given JMH options) and writes the results as JSON to
+ * <code>jmh-result.json</code>, unless -rf/-rff say otherwise, so they can be compared across changes.
+ * <p/>
+ * Usage: java -jar target/benchmarks.jar [jmh options, e.g. PatternExtraction -rff results.json]
+ *
+ * @author kedarb
+ * @since 01/22/12
+ */
+public class LoreBenchmarks {
+    public static void main(String args[]) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLineOptions);
+        if (!commandLineOptions.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+        if (!commandLineOptions.getResult().hasValue()) options.result("jmh-result.json");
+        new Runner(options.build()).run();
+    }
+}
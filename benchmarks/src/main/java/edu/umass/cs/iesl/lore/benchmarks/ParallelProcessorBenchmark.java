@@ -0,0 +1,112 @@
+package edu.umass.cs.iesl.lore.benchmarks;
+
+import edu.umass.cs.iesl.lore.LineBasedFileSplitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling overhead of the ParallelProcessor engines: {@link LineBasedFileSplitter} does next to no work per
+ * line, so the time per line is what the engine spends handing out work and collecting results.
+ *
+ * @author kedarb
+ * @since 01/22/12
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2G"})
+public class ParallelProcessorBenchmark {
+    static final int NUM_LINES = 20000;
+
+    @Param({"actor", "batch"})
+    String engine;
+
+    @Param({"1", "4"})
+    int workers;
+
+    File inputFile;
+    File outputDir;
+
+    @Setup
+    public void setup() throws IOException {
+        inputFile = File.createTempFile("lore-lines-", ".txt");
+        inputFile.deleteOnExit();
+        PrintWriter writer = new PrintWriter(inputFile, "UTF-8");
+        try {
+            for (int i = 0; i < NUM_LINES; i++) writer.println("line " + i + "\tsome text to split");
+        } finally {
+            writer.close();
+        }
+        outputDir = new File(inputFile.getPath() + ".out");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteOutput() {
+        File[] files = outputDir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        deleteOutput();
+        outputDir.delete();
+        inputFile.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_LINES)
+    public Object splitLines() {
+        return new LineBasedFileSplitter(inputFile.getPath(), outputDir.getPath()) {
+            @Override
+            public String engine() {
+                return engine;
+            }
+
+            @Override
+            public int numWorkers() {
+                return workers;
+            }
+
+            @Override
+            public int batchSize() {
+                return 64;
+            }
+
+            @Override
+            public int queuedBatchesPerWorker() {
+                return 4;
+            }
+
+            @Override
+            public int debugEvery() {
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public int metricsLogInterval() {
+                return 0;
+            }
+        }.run();
+    }
+}
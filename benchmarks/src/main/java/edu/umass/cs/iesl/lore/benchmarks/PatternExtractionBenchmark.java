@@ -0,0 +1,66 @@
+package edu.umass.cs.iesl.lore.benchmarks;
+
+import edu.umass.cs.iesl.lore.AnnotatedDocument;
+import edu.umass.cs.iesl.lore.CoreNLPAnnotator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Documents per second of pattern extraction alone, on the pre-annotated sample corpus. Every operation gets a
+ * fresh copy of the next document, so the dependency indexes are built as they are in a real run.
+ *
+ * @author kedarb
+ * @since 01/22/12
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4G"})
+public class PatternExtractionBenchmark {
+    SampleCorpus corpus;
+    byte[][] fixtures;
+    int next = 0;
+
+    String filePath;
+    AnnotatedDocument document;
+
+    @Setup
+    public void setup() throws IOException {
+        corpus = new SampleCorpus();
+        AnnotatedDocument[] documents = corpus.annotate();
+        fixtures = new byte[documents.length][];
+        for (int i = 0; i < documents.length; i++) fixtures[i] = SampleCorpus.toBytes(documents[i]);
+    }
+
+    @Setup(Level.Invocation)
+    public void nextDocument() throws IOException {
+        filePath = corpus.filePaths[next];
+        document = SampleCorpus.fromBytes(fixtures[next]);
+        next = (next + 1) % fixtures.length;
+    }
+
+    @Benchmark
+    public List<String> entityMentionPatterns() {
+        return CoreNLPAnnotator.getEntityMentionPatterns(filePath, document);
+    }
+
+    @Benchmark
+    public List<String> relationMentionPatterns() {
+        return CoreNLPAnnotator.getRelationMentionPatterns(filePath, document);
+    }
+}
@@ -0,0 +1,172 @@
+package edu.umass.cs.iesl.lore.benchmarks;
+
+import edu.stanford.nlp.util.StringUtils;
+import edu.umass.cs.iesl.lore.AnnotatedDocument;
+import edu.umass.cs.iesl.lore.CoreNLPAnnotator;
+import edu.umass.cs.iesl.lore.CoreNLPUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Milliseconds per document of relation pattern extraction on synthetic long documents, bucketing mentions by
+ * sentence against the all-pairs chain loop it replaced. The setup checks that both give the same output.
+ *
+ * @author kedarb
+ * @since 12/04/11
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2G"})
+public class RelationPatternBenchmark {
+    static final String[] TAGS = {"NN", "NNS", "NNP", "VB", "VBD", "VBZ", "JJ", "IN", "DT", "PRP"};
+    static final String[] RELATIONS = {"nsubj", "dobj", "amod", "prep_of", "prep_in", "det", "poss", "nn", "conj_and"};
+    static final String[] ENTITY_NERS = {"PERSON", "ORGANIZATION", "LOCATION", "MISC", "DATE"};
+    static final int NUM_DOCUMENTS = 20;
+    static final int SENTENCE_LENGTH = 25;
+    static final String FILE_PATH = "/synthetic/doc.txt";
+
+    @Param({"200"})
+    int numSentences;
+    @Param({"80"})
+    int numChains;
+    @Param({"6"})
+    int mentionsPerChain;
+
+    AnnotatedDocument[] documents;
+    int next = 0;
+    AnnotatedDocument document;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        documents = new AnnotatedDocument[NUM_DOCUMENTS];
+        for (int i = 0; i < NUM_DOCUMENTS; i++) {
+            documents[i] = syntheticDocument(random, numSentences, SENTENCE_LENGTH, numChains, mentionsPerChain);
+            if (!allPairsRelationMentionPatterns(FILE_PATH, documents[i])
+                    .equals(CoreNLPAnnotator.getRelationMentionPatterns(FILE_PATH, documents[i])))
+                throw new IllegalStateException("Bucketed and all-pairs relation patterns differ!!");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void nextDocument() {
+        document = documents[next];
+        next = (next + 1) % documents.length;
+    }
+
+    @Benchmark
+    public List<String> bucketed() {
+        return CoreNLPAnnotator.getRelationMentionPatterns(FILE_PATH, document);
+    }
+
+    @Benchmark
+    public List<String> allPairs() {
+        return allPairsRelationMentionPatterns(FILE_PATH, document);
+    }
+
+    /**
+     * A document with random dependency trees and coref chains of single-token mentions scattered over its
+     * sentences.
+     */
+    static AnnotatedDocument syntheticDocument(Random random, int numSentences, int sentenceLength,
+                                               int numChains, int mentionsPerChain) {
+        String[][] ners = new String[numSentences][sentenceLength];
+        AnnotatedDocument.Chain[] chains = new AnnotatedDocument.Chain[numChains];
+        for (int c = 0; c < numChains; c++) {
+            String ner = ENTITY_NERS[random.nextInt(ENTITY_NERS.length)];
+            AnnotatedDocument.Mention[] mentions = new AnnotatedDocument.Mention[mentionsPerChain];
+            for (int m = 0; m < mentionsPerChain; m++) {
+                int sentNum = 1 + random.nextInt(numSentences);
+                int headIndex = 1 + random.nextInt(sentenceLength);
+                mentions[m] = new AnnotatedDocument.Mention(sentNum, headIndex, headIndex + 1, headIndex, c);
+                ners[sentNum - 1][headIndex - 1] = ner;
+            }
+            chains[c] = new AnnotatedDocument.Chain(c, mentions[0], mentions);
+        }
+
+        AnnotatedDocument.Sentence[] sentences = new AnnotatedDocument.Sentence[numSentences];
+        for (int s = 0; s < numSentences; s++) {
+            String[] words = new String[sentenceLength];
+            String[] tags = new String[sentenceLength];
+            int[] vertices = new int[sentenceLength];
+            int[] governors = new int[sentenceLength - 1];
+            int[] dependents = new int[sentenceLength - 1];
+            String[] relations = new String[sentenceLength - 1];
+            for (int i = 0; i < sentenceLength; i++) {
+                words[i] = "w" + random.nextInt(1000);
+                tags[i] = TAGS[random.nextInt(TAGS.length)];
+                if (ners[s][i] == null) ners[s][i] = "O";
+                vertices[i] = i + 1;
+                if (i > 0) {
+                    governors[i - 1] = 1 + random.nextInt(i);
+                    dependents[i - 1] = i + 1;
+                    relations[i - 1] = RELATIONS[random.nextInt(RELATIONS.length)];
+                }
+            }
+            sentences[s] = new AnnotatedDocument.Sentence(words, tags, words, ners[s], vertices, 1,
+                    governors, dependents, relations);
+        }
+        return new AnnotatedDocument(sentences, chains);
+    }
+
+    /**
+     * The previous extraction: every pair of chains, then every pair of their mentions.
+     */
+    static List<String> allPairsRelationMentionPatterns(String filePath, AnnotatedDocument document) {
+        List<String> relPatterns = new ArrayList<String>();
+        for (AnnotatedDocument.Chain srcChain : document.chains) {
+            AnnotatedDocument.Mention srcEntity = srcChain.representative;
+            if (!CoreNLPUtils.isAllowedMentionNER(srcEntity, document))
+                continue;
+
+            String srcEntityPhrase = CoreNLPUtils.getMentionSpanForNER(srcEntity, document);
+            String srcNER = CoreNLPUtils.getNER(srcEntity, document);
+            String srcEntityId = srcEntityPhrase.replace(' ', '_') + "##" + CoreNLPUtils.getMentionUniqID(filePath, srcEntity);
+            for (AnnotatedDocument.Chain destChain : document.chains) {
+                AnnotatedDocument.Mention destEntity = destChain.representative;
+                if (!CoreNLPUtils.isAllowedMentionNER(destEntity, document))
+                    continue;
+
+                String destEntityPhrase = CoreNLPUtils.getMentionSpanForNER(destEntity, document);
+                String destNER = CoreNLPUtils.getNER(destEntity, document);
+                String destEntityId = destEntityPhrase.replace(' ', '_') + "##" + CoreNLPUtils.getMentionUniqID(filePath, destEntity);
+                ArrayList<String> srcDestEdgeWalks = new ArrayList<String>();
+
+                for (AnnotatedDocument.Mention srcMention : srcChain.mentions) {
+                    for (AnnotatedDocument.Mention destMention : destChain.mentions) {
+                        List<String> edgeWalk = CoreNLPUtils.getEdgeWalk(srcMention, destMention, document, true);
+                        if (edgeWalk.size() > 0) {
+                            srcDestEdgeWalks.add(StringUtils.join(edgeWalk, ""));
+                        }
+                    }
+                }
+
+                if (srcDestEdgeWalks.size() > 0) {
+                    String srcDestEdgeWalkStr = StringUtils.join(srcDestEdgeWalks, "|||");
+                    String tsvalue = filePath + "\t" + srcEntityPhrase + "\t" + srcEntityId + "\t" + srcNER + "\t" +
+                            srcDestEdgeWalkStr + "\t" + destEntityPhrase + "\t" + destEntityId + "\t" + destNER;
+                    relPatterns.add(tsvalue);
+                }
+            }
+        }
+        return relPatterns;
+    }
+}
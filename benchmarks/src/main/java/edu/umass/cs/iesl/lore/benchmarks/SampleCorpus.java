@@ -0,0 +1,104 @@
+package edu.umass.cs.iesl.lore.benchmarks;
+
+import edu.umass.cs.iesl.lore.AnnotatedDocument;
+import edu.umass.cs.iesl.lore.CoreNLPAnnotator;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The checked-in sample corpus (<code>corpus/*.txt</code> on the classpath, listed in
+ * <code>corpus/index.txt</code>). Texts are normalized like the extractors read them: lines joined with "\n".
+ *
+ * @author kedarb
+ * @since 01/22/12
+ */
+public class SampleCorpus {
+    static final String CORPUS = "corpus/";
+
+    // where pre-annotated fixtures are cached between benchmark runs
+    static final String CACHE_DIR_PROPERTY = "lore.benchmarks.annotation-cache-dir";
+
+    public final String[] filePaths;
+    public final String[] texts;
+
+    public SampleCorpus() throws IOException {
+        List<String> names = readLines(CORPUS + "index.txt");
+        filePaths = new String[names.size()];
+        texts = new String[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            filePaths[i] = "/corpus/" + names.get(i);
+            StringBuilder text = new StringBuilder();
+            for (String line : readLines(CORPUS + names.get(i))) {
+                if (text.length() > 0) text.append('\n');
+                text.append(line);
+            }
+            texts[i] = text.toString();
+        }
+    }
+
+    public int size() {
+        return texts.length;
+    }
+
+    static List<String> readLines(String resource) throws IOException {
+        InputStream in = SampleCorpus.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) throw new IOException("Missing resource " + resource);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        List<String> lines = new ArrayList<String>();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * An annotator with the full pipeline and no cache, for end-to-end numbers.
+     */
+    public static CoreNLPAnnotator newAnnotator() {
+        return new CoreNLPAnnotator(new Properties());
+    }
+
+    /**
+     * Annotates the corpus, caching the annotations under {@link #CACHE_DIR_PROPERTY}
+     * (default <code>target/annotation-cache</code>) so that only the first run pays for the parser.
+     */
+    public AnnotatedDocument[] annotate() {
+        Properties options = new Properties();
+        options.setProperty(CoreNLPAnnotator.ANNOTATION_CACHE_DIR,
+                System.getProperty(CACHE_DIR_PROPERTY, "target/annotation-cache"));
+        CoreNLPAnnotator annotator = new CoreNLPAnnotator(options);
+        AnnotatedDocument[] documents = new AnnotatedDocument[size()];
+        for (int i = 0; i < size(); i++) documents[i] = annotator.annotate(texts[i]);
+        return documents;
+    }
+
+    public static byte[] toBytes(AnnotatedDocument document) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        document.write(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A fresh copy of a serialized document, i.e. without the lazily built dependency indexes.
+     */
+    public static AnnotatedDocument fromBytes(byte[] bytes) throws IOException {
+        return AnnotatedDocument.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,352 @@
+package edu.umass.cs.iesl.lore;
+
+import edu.stanford.nlp.dcoref.CorefChain;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.CorefCoreAnnotations;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.trees.semgraph.SemanticGraph;
+import edu.stanford.nlp.trees.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, pipeline-independent view of an annotated document: everything mention pattern extraction needs
+ * (tokens with POS, lemma and NER, the collapsed CC-processed dependencies and the coref chains) stored in flat
+ * arrays. Token, sentence and mention offsets are 1-based as in CoreNLP.
+ *
+ * @author kedarb
+ * @since 11/27/11
+ */
+public class AnnotatedDocument {
+    static final int FORMAT_VERSION = 3;
+
+    public final Sentence[] sentences;
+    // chains in the iteration order of the CorefChainAnnotation map
+    public final Chain[] chains;
+
+    public AnnotatedDocument(Sentence[] sentences, Chain[] chains) {
+        this.sentences = sentences;
+        this.chains = chains;
+    }
+
+    public static class Sentence {
+        // token i is at position i - 1
+        public final String[] words;
+        public final String[] tags;
+        public final String[] lemmas;
+        public final String[] ners;
+        // token indices that are vertices of the dependency graph
+        public final int[] vertices;
+        // index of the first root of the dependency graph (0 if none)
+        public final int firstRoot;
+        // dependency edges in SemanticGraph.edgeList() order
+        public final int[] edgeGovernors;
+        public final int[] edgeDependents;
+        public final String[] edgeRelations;
+        // edge numbers in the order the edges were added to the graph (SemanticGraph.edgeSet() order), which
+        // decides between equally short paths, see DependencyIndex#getShortestPathEdges
+        public final int[] edgeOrder;
+        private DependencyIndex index = null;
+
+        /**
+         * A sentence whose edges were added to the graph in edge list order.
+         */
+        public Sentence(String[] words, String[] tags, String[] lemmas, String[] ners, int[] vertices, int firstRoot,
+                        int[] edgeGovernors, int[] edgeDependents, String[] edgeRelations) {
+            this(words, tags, lemmas, ners, vertices, firstRoot, edgeGovernors, edgeDependents, edgeRelations,
+                    identity(edgeGovernors.length));
+        }
+
+        public Sentence(String[] words, String[] tags, String[] lemmas, String[] ners, int[] vertices, int firstRoot,
+                        int[] edgeGovernors, int[] edgeDependents, String[] edgeRelations, int[] edgeOrder) {
+            this.words = words;
+            this.tags = tags;
+            this.lemmas = lemmas;
+            this.ners = ners;
+            this.vertices = vertices;
+            this.firstRoot = firstRoot;
+            this.edgeGovernors = edgeGovernors;
+            this.edgeDependents = edgeDependents;
+            this.edgeRelations = edgeRelations;
+            this.edgeOrder = edgeOrder;
+        }
+
+        private static int[] identity(int n) {
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            return order;
+        }
+
+        public int numTokens() {
+            return words.length;
+        }
+
+        public int numEdges() {
+            return edgeGovernors.length;
+        }
+
+        public DependencyIndex getIndex() {
+            if (index == null) index = new DependencyIndex(this);
+            return index;
+        }
+    }
+
+    public static class Mention {
+        public final int sentNum;
+        public final int startIndex;
+        public final int endIndex;
+        public final int headIndex;
+        public final int corefClusterID;
+
+        public Mention(int sentNum, int startIndex, int endIndex, int headIndex, int corefClusterID) {
+            this.sentNum = sentNum;
+            this.startIndex = startIndex;
+            this.endIndex = endIndex;
+            this.headIndex = headIndex;
+            this.corefClusterID = corefClusterID;
+        }
+    }
+
+    public static class Chain {
+        public final int chainNum;
+        public final Mention representative;
+        public final Mention[] mentions;
+
+        public Chain(int chainNum, Mention representative, Mention[] mentions) {
+            this.chainNum = chainNum;
+            this.representative = representative;
+            this.mentions = mentions;
+        }
+    }
+
+    public int numTokens() {
+        int numTokens = 0;
+        for (Sentence sentence : sentences) numTokens += sentence.numTokens();
+        return numTokens;
+    }
+
+    public Sentence getSentence(Mention mention) {
+        return sentences[mention.sentNum - 1];
+    }
+
+    public static AnnotatedDocument fromAnnotation(Annotation document) {
+        return fromAnnotation(document.get(CoreAnnotations.SentencesAnnotation.class),
+                document.get(CorefCoreAnnotations.CorefChainAnnotation.class), (int[]) null);
+    }
+
+    /**
+     * @param coreSentences all sentences of the document (sentences that were not parsed have no dependencies)
+     * @param graph         the coref chains (null if coref was not run)
+     * @param sentNums      the document sentence number of each sentence coref was run on, or null if coref was
+     *                      run on all sentences
+     */
+    public static AnnotatedDocument fromAnnotation(List<CoreMap> coreSentences, Map<Integer, CorefChain> graph,
+                                                   int[] sentNums) {
+        if (graph == null)
+            return fromAnnotation(coreSentences, new ArrayList<Map<Integer, CorefChain>>(), new ArrayList<int[]>());
+        return fromAnnotation(coreSentences, Collections.singletonList(graph), Collections.singletonList(sentNums));
+    }
+
+    /**
+     * Builds the document from coref run separately over parts (windows) of it. Chain and cluster ids of every
+     * part after the first are shifted past the ids of the parts before it, so that they stay unique.
+     * @param coreSentences all sentences of the document
+     * @param graphs        the coref chains of every part
+     * @param sentNums      for every part, the document sentence number of each of its sentences (or null if the
+     *                      part is the whole document)
+     */
+    public static AnnotatedDocument fromAnnotation(List<CoreMap> coreSentences, List<Map<Integer, CorefChain>> graphs,
+                                                   List<int[]> sentNums) {
+        Sentence[] sentences = new Sentence[coreSentences.size()];
+        for (int s = 0; s < sentences.length; s++) {
+            CoreMap coreSentence = coreSentences.get(s);
+            List<CoreLabel> tokens = coreSentence.get(CoreAnnotations.TokensAnnotation.class);
+            int numTokens = tokens.size();
+            String[] words = new String[numTokens];
+            String[] tags = new String[numTokens];
+            String[] lemmas = new String[numTokens];
+            String[] ners = new String[numTokens];
+            for (int i = 0; i < numTokens; i++) {
+                CoreLabel token = tokens.get(i);
+                words[i] = CoreNLPUtils.getWord(token);
+                tags[i] = CoreNLPUtils.getTag(token);
+                lemmas[i] = CoreNLPUtils.getLemma(token);
+                ners[i] = CoreNLPUtils.getNER(token);
+            }
+
+            SemanticGraph dependencies = CoreNLPUtils.getDependenciesForSentence(coreSentence);
+            int[] vertices = new int[0];
+            int firstRoot = 0;
+            int[] edgeGovernors = new int[0];
+            int[] edgeDependents = new int[0];
+            String[] edgeRelations = new String[0];
+            int[] edgeOrder = new int[0];
+            if (dependencies != null) {
+                List<IndexedWord> vertexList = dependencies.vertexList();
+                vertices = new int[vertexList.size()];
+                for (int i = 0; i < vertices.length; i++) vertices[i] = vertexList.get(i).index();
+                if (!dependencies.getRoots().isEmpty()) firstRoot = dependencies.getFirstRoot().index();
+                List<SemanticGraphEdge> edgeList = dependencies.edgeList();
+                edgeGovernors = new int[edgeList.size()];
+                edgeDependents = new int[edgeList.size()];
+                edgeRelations = new String[edgeList.size()];
+                HashMap<SemanticGraphEdge, Integer> edgeNumbers = new HashMap<SemanticGraphEdge, Integer>();
+                for (int i = 0; i < edgeList.size(); i++) {
+                    SemanticGraphEdge edge = edgeList.get(i);
+                    edgeGovernors[i] = edge.getGovernor().index();
+                    edgeDependents[i] = edge.getDependent().index();
+                    edgeRelations[i] = edge.getRelation().toString();
+                    edgeNumbers.put(edge, i);
+                }
+                edgeOrder = new int[edgeList.size()];
+                int n = 0;
+                for (SemanticGraphEdge edge : dependencies.edgeSet()) edgeOrder[n++] = edgeNumbers.get(edge);
+            }
+            sentences[s] = new Sentence(words, tags, lemmas, ners, vertices, firstRoot,
+                    edgeGovernors, edgeDependents, edgeRelations, edgeOrder);
+        }
+
+        List<Chain> chains = new ArrayList<Chain>();
+        int idOffset = 0;
+        for (int p = 0; p < graphs.size(); p++) {
+            Map<Integer, CorefChain> graph = graphs.get(p);
+            if (graph == null) continue;
+            int[] partSentNums = sentNums.get(p);
+            int maxId = 0;
+            for (int chainNum : graph.keySet()) {
+                CorefChain chain = graph.get(chainNum);
+                List<CorefChain.CorefMention> corefMentions = chain.getCorefMentions();
+                Mention[] mentions = new Mention[corefMentions.size()];
+                for (int i = 0; i < mentions.length; i++) {
+                    mentions[i] = toMention(corefMentions.get(i), partSentNums, idOffset);
+                    maxId = Math.max(maxId, mentions[i].corefClusterID);
+                }
+                chains.add(new Chain(chainNum + idOffset,
+                        toMention(chain.getRepresentativeMention(), partSentNums, idOffset), mentions));
+                maxId = Math.max(maxId, chainNum + idOffset);
+            }
+            idOffset = Math.max(idOffset, maxId + 1);
+        }
+        return new AnnotatedDocument(sentences, chains.toArray(new Chain[chains.size()]));
+    }
+
+    private static Mention toMention(CorefChain.CorefMention mention, int[] sentNums, int idOffset) {
+        int sentNum = sentNums == null ? mention.sentNum : sentNums[mention.sentNum - 1];
+        return new Mention(sentNum, mention.startIndex, mention.endIndex, mention.headIndex,
+                mention.corefClusterID + idOffset);
+    }
+
+    /**
+     * Writes the document as a string dictionary followed by variable-length ints.
+     */
+    public void write(DataOutput out) throws IOException {
+        BinaryUtils.StringDictionary dictionary = new BinaryUtils.StringDictionary();
+        for (Sentence sentence : sentences) {
+            for (int i = 0; i < sentence.numTokens(); i++) {
+                dictionary.id(sentence.words[i]);
+                dictionary.id(sentence.tags[i]);
+                dictionary.id(sentence.lemmas[i]);
+                dictionary.id(sentence.ners[i]);
+            }
+            for (String relation : sentence.edgeRelations) dictionary.id(relation);
+        }
+        dictionary.write(out);
+
+        BinaryUtils.writeVarInt(out, sentences.length);
+        for (Sentence sentence : sentences) {
+            BinaryUtils.writeVarInt(out, sentence.numTokens());
+            for (int i = 0; i < sentence.numTokens(); i++) {
+                BinaryUtils.writeVarInt(out, dictionary.id(sentence.words[i]));
+                BinaryUtils.writeVarInt(out, dictionary.id(sentence.tags[i]));
+                BinaryUtils.writeVarInt(out, dictionary.id(sentence.lemmas[i]));
+                BinaryUtils.writeVarInt(out, dictionary.id(sentence.ners[i]));
+            }
+            BinaryUtils.writeVarInt(out, sentence.vertices.length);
+            for (int vertex : sentence.vertices) BinaryUtils.writeVarInt(out, vertex);
+            BinaryUtils.writeVarInt(out, sentence.firstRoot);
+            BinaryUtils.writeVarInt(out, sentence.numEdges());
+            for (int i = 0; i < sentence.numEdges(); i++) {
+                BinaryUtils.writeVarInt(out, sentence.edgeGovernors[i]);
+                BinaryUtils.writeVarInt(out, sentence.edgeDependents[i]);
+                BinaryUtils.writeVarInt(out, dictionary.id(sentence.edgeRelations[i]));
+            }
+            for (int e : sentence.edgeOrder) BinaryUtils.writeVarInt(out, e);
+        }
+
+        BinaryUtils.writeVarInt(out, chains.length);
+        for (Chain chain : chains) {
+            BinaryUtils.writeVarInt(out, chain.chainNum);
+            writeMention(out, chain.representative);
+            BinaryUtils.writeVarInt(out, chain.mentions.length);
+            for (Mention mention : chain.mentions) writeMention(out, mention);
+        }
+    }
+
+    private static void writeMention(DataOutput out, Mention mention) throws IOException {
+        BinaryUtils.writeVarInt(out, mention.sentNum);
+        BinaryUtils.writeVarInt(out, mention.startIndex);
+        BinaryUtils.writeVarInt(out, mention.endIndex);
+        BinaryUtils.writeVarInt(out, mention.headIndex);
+        BinaryUtils.writeVarInt(out, mention.corefClusterID);
+    }
+
+    public static AnnotatedDocument read(DataInput in) throws IOException {
+        String[] dictionary = BinaryUtils.readStringDictionary(in);
+
+        Sentence[] sentences = new Sentence[BinaryUtils.readVarInt(in)];
+        for (int s = 0; s < sentences.length; s++) {
+            int numTokens = BinaryUtils.readVarInt(in);
+            String[] words = new String[numTokens];
+            String[] tags = new String[numTokens];
+            String[] lemmas = new String[numTokens];
+            String[] ners = new String[numTokens];
+            for (int i = 0; i < numTokens; i++) {
+                words[i] = dictionary[BinaryUtils.readVarInt(in)];
+                tags[i] = dictionary[BinaryUtils.readVarInt(in)];
+                lemmas[i] = dictionary[BinaryUtils.readVarInt(in)];
+                ners[i] = dictionary[BinaryUtils.readVarInt(in)];
+            }
+            int[] vertices = new int[BinaryUtils.readVarInt(in)];
+            for (int i = 0; i < vertices.length; i++) vertices[i] = BinaryUtils.readVarInt(in);
+            int firstRoot = BinaryUtils.readVarInt(in);
+            int numEdges = BinaryUtils.readVarInt(in);
+            int[] edgeGovernors = new int[numEdges];
+            int[] edgeDependents = new int[numEdges];
+            String[] edgeRelations = new String[numEdges];
+            for (int i = 0; i < numEdges; i++) {
+                edgeGovernors[i] = BinaryUtils.readVarInt(in);
+                edgeDependents[i] = BinaryUtils.readVarInt(in);
+                edgeRelations[i] = dictionary[BinaryUtils.readVarInt(in)];
+            }
+            int[] edgeOrder = new int[numEdges];
+            for (int i = 0; i < numEdges; i++) edgeOrder[i] = BinaryUtils.readVarInt(in);
+            sentences[s] = new Sentence(words, tags, lemmas, ners, vertices, firstRoot,
+                    edgeGovernors, edgeDependents, edgeRelations, edgeOrder);
+        }
+
+        Chain[] chains = new Chain[BinaryUtils.readVarInt(in)];
+        for (int c = 0; c < chains.length; c++) {
+            int chainNum = BinaryUtils.readVarInt(in);
+            Mention representative = readMention(in);
+            Mention[] mentions = new Mention[BinaryUtils.readVarInt(in)];
+            for (int i = 0; i < mentions.length; i++) mentions[i] = readMention(in);
+            chains[c] = new Chain(chainNum, representative, mentions);
+        }
+        return new AnnotatedDocument(sentences, chains);
+    }
+
+    private static Mention readMention(DataInput in) throws IOException {
+        return new Mention(BinaryUtils.readVarInt(in), BinaryUtils.readVarInt(in), BinaryUtils.readVarInt(in),
+                BinaryUtils.readVarInt(in), BinaryUtils.readVarInt(in));
+    }
+}
@@ -0,0 +1,123 @@
+package edu.umass.cs.iesl.lore;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of {@link AnnotatedDocument}s keyed by the SHA-1 of the document text, so that re-extracting
+ * patterns after a change to {@link CoreNLPUtils} does not re-run the parser and dcoref. Entries live in
+ * <code>cacheDir/ab/abcdef...</code> and are written to a temporary file first, so concurrent workers never
+ * see partial entries. The key also covers a signature of the annotator settings, so annotations made with
+ * different settings do not mix.
+ *
+ * @author kedarb
+ * @since 11/27/11
+ */
+public class AnnotationCache {
+    private static final Logger logger = Logger.getLogger(AnnotationCache.class);
+    static final int MAGIC = 0x4c4f5245; // "LORE"
+
+    private final File cacheDir;
+    private final String signature;
+
+    public AnnotationCache(File cacheDir) {
+        this(cacheDir, "");
+    }
+
+    public AnnotationCache(File cacheDir, String signature) {
+        this.cacheDir = cacheDir;
+        this.signature = signature;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public String key(String docText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            if (signature.length() > 0) {
+                digest.update(signature.getBytes("UTF-8"));
+                digest.update((byte) 0);
+            }
+            byte[] hash = digest.digest(docText.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder();
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new RuntimeException(nsae);
+        } catch (UnsupportedEncodingException uee) {
+            throw new RuntimeException(uee);
+        }
+    }
+
+    File getFile(String key) {
+        return new File(new File(cacheDir, key.substring(0, 2)), key);
+    }
+
+    /**
+     * @param docText
+     * @return the cached annotation of the document or null on a miss (or an unreadable entry)
+     */
+    public AnnotatedDocument get(String docText) {
+        File file = getFile(key(docText));
+        if (!file.isFile()) return null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            if (in.readInt() != MAGIC || in.readInt() != AnnotatedDocument.FORMAT_VERSION) return null;
+            // guard against hash collisions
+            if (BinaryUtils.readVarInt(in) != docText.length()) return null;
+            return AnnotatedDocument.read(in);
+        } catch (IOException ioe) {
+            logger.warn("Ignoring unreadable cache entry " + file.getAbsolutePath() + ": " + ioe.getMessage());
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    public void put(String docText, AnnotatedDocument document) throws IOException {
+        File file = getFile(key(docText));
+        file.getParentFile().mkdirs();
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))));
+            out.writeInt(MAGIC);
+            out.writeInt(AnnotatedDocument.FORMAT_VERSION);
+            BinaryUtils.writeVarInt(out, docText.length());
+            document.write(out);
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file) && !file.isFile())
+                throw new IOException("Cannot move " + tmpFile.getAbsolutePath() + " to " + file.getAbsolutePath());
+        } finally {
+            closeQuietly(out);
+            tmpFile.delete();
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
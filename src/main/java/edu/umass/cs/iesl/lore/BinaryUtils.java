@@ -0,0 +1,107 @@
+package edu.umass.cs.iesl.lore;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Helpers for the compact binary formats: variable-length ints, length-prefixed strings and string dictionaries.
+ *
+ * @author kedarb
+ * @since 11/27/11
+ */
+public class BinaryUtils {
+    /**
+     * Writes a non-negative int in 7-bit groups, least significant group first.
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        if (value < 0) throw new IllegalArgumentException("cannot encode negative value=" + value);
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28) throw new IOException("malformed variable-length int");
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Writes the UTF-8 bytes of a string preceded by their number as a variable-length int. Unlike
+     * {@link DataOutput#writeUTF}, strings are not limited to 64KB.
+     */
+    public static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Assigns consecutive ids to strings in order of first appearance. Id 0 is reserved for null.
+     */
+    public static class StringDictionary {
+        private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+
+        public int id(String s) {
+            if (s == null) return 0;
+            Integer id = ids.get(s);
+            if (id == null) {
+                strings.add(s);
+                id = strings.size();
+                ids.put(s, id);
+            }
+            return id;
+        }
+
+        /**
+         * @return the string with the given id (null for 0)
+         */
+        public String get(int id) {
+            return id == 0 ? null : strings.get(id - 1);
+        }
+
+        public int size() {
+            return strings.size();
+        }
+
+        public void clear() {
+            ids.clear();
+            strings.clear();
+        }
+
+        public void write(DataOutput out) throws IOException {
+            writeVarInt(out, strings.size());
+            for (String s : strings) writeString(out, s);
+        }
+    }
+
+    /**
+     * Reads a dictionary written by {@link StringDictionary#write}; the returned array is indexed by id.
+     */
+    public static String[] readStringDictionary(DataInput in) throws IOException {
+        int size = readVarInt(in);
+        String[] strings = new String[size + 1];
+        for (int i = 1; i <= size; i++) strings[i] = readString(in);
+        return strings;
+    }
+}
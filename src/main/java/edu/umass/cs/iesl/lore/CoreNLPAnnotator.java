@@ -7,31 +7,321 @@ import edu.stanford.nlp.ling.CorefCoreAnnotations;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.util.CoreMap;
-import edu.stanford.nlp.util.StringUtils;
 
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 /**
+ * Annotates documents with CoreNLP and extracts mention patterns from them. An annotator is not thread-safe.
+ * <p/>
+ * StanfordCoreNLP caches the annotators (and so the models) it creates in a static pool that every later
+ * StanfordCoreNLP takes them from. Every CoreNLPAnnotator therefore builds its pipelines from a pool of its own,
+ * so that annotators used by different threads never share tagger, NER, parser or dcoref objects. The price is
+ * a full set of models in memory per CoreNLPAnnotator: heap grows linearly with the number of annotators (e.g.
+ * max-workers), and models are loaded once per annotator rather than once per process.
+ *
  * @author kedarb
  * @since 10/23/11
  */
 public class CoreNLPAnnotator {
+    private static final Logger logger = Logger.getLogger(CoreNLPAnnotator.class);
+
+    // option: directory of the on-disk annotation cache (no caching if unset)
+    public static final String ANNOTATION_CACHE_DIR = "annotation-cache-dir";
+    // option: only parse and resolve coreference in sentences that can yield patterns
+    public static final String SELECTIVE_PARSING = "selective-parsing";
+    // option: do not parse sentences with more tokens than this (0 for no limit); with selective parsing such
+    // sentences are skipped altogether, otherwise they get no parse but still go to dcoref
+    public static final String MAX_PARSE_SENTENCE_LENGTH = "max-parse-sentence-length";
+    // option: resolve coreference in windows of this many sentences rather than over the whole document (0 for
+    // no windows), which bounds the cost of dcoref on long documents at the price of cross-window chains
+    public static final String COREF_WINDOW_SENTENCES = "coref-window-sentences";
+    // option: record per-annotator and per-document timings in PipelineMetrics
+    public static final String PIPELINE_METRICS = "pipeline-metrics";
+
+    static final String CHEAP_ANNOTATORS = "tokenize, ssplit, pos, lemma, ner";
+    static final String EXPENSIVE_ANNOTATORS = "parse, dcoref";
+
     // creates a StanfordCoreNLP object, with POS tagging, lemmatization, NER, parsing, and coreference resolution
+    // (only up to NER with selective parsing or coref windows, where parsePipeline does the rest)
     StanfordCoreNLP pipeline;
+    StanfordCoreNLP parsePipeline = null;
+    AnnotationCache cache = null;
+    final boolean selectiveParsing;
+    final int maxParseSentenceLength;
+    final int corefWindowSentences;
+    final SelectiveParsingStats selectiveParsingStats;
+    // with pipeline metrics, single-annotator pipelines run (and are timed) one after the other instead
+    PipelineMetrics metrics = null;
+    TimedPipeline timedPipeline = null;
+    TimedPipeline timedParsePipeline = null;
 
     public CoreNLPAnnotator() {
+        this(new Properties());
+    }
+
+    public CoreNLPAnnotator(Properties options) {
+        this(options, new SelectiveParsingStats());
+    }
+
+    public CoreNLPAnnotator(Properties options, SelectiveParsingStats selectiveParsingStats) {
+        this.selectiveParsingStats = selectiveParsingStats;
+        selectiveParsing = Boolean.parseBoolean(options.getProperty(SELECTIVE_PARSING, "false"));
+        maxParseSentenceLength = Integer.parseInt(options.getProperty(MAX_PARSE_SENTENCE_LENGTH, "0"));
+        corefWindowSentences = Integer.parseInt(options.getProperty(COREF_WINDOW_SENTENCES, "0"));
+        boolean metricsEnabled = Boolean.parseBoolean(options.getProperty(PIPELINE_METRICS, "false"));
+        if (metricsEnabled) metrics = PipelineMetrics.getInstance();
+        // the pipelines below share one fresh annotator pool, which no other CoreNLPAnnotator uses; models of
+        // different annotators are loaded one after the other
+        synchronized (StanfordCoreNLP.class) {
+            StanfordCoreNLP.clearAnnotatorPool();
+            newPipelines(metricsEnabled);
+            StanfordCoreNLP.clearAnnotatorPool();
+        }
+        String cacheDir = options.getProperty(ANNOTATION_CACHE_DIR, "");
+        if (cacheDir.length() > 0) cache = new AnnotationCache(new File(cacheDir), cacheSignature());
+    }
+
+    private void newPipelines(boolean metricsEnabled) {
+        if (annotatesInParts()) {
+            pipeline = newPipeline(CHEAP_ANNOTATORS, maxParseSentenceLength);
+            parsePipeline = newPipeline(EXPENSIVE_ANNOTATORS, maxParseSentenceLength);
+            if (metricsEnabled) {
+                timedPipeline = new TimedPipeline(CHEAP_ANNOTATORS, maxParseSentenceLength, metrics);
+                timedParsePipeline = new TimedPipeline(EXPENSIVE_ANNOTATORS, maxParseSentenceLength, metrics);
+            }
+        } else {
+            pipeline = newPipeline(CHEAP_ANNOTATORS + ", " + EXPENSIVE_ANNOTATORS, maxParseSentenceLength);
+            if (metricsEnabled) {
+                timedPipeline = new TimedPipeline(CHEAP_ANNOTATORS + ", " + EXPENSIVE_ANNOTATORS,
+                        maxParseSentenceLength, metrics);
+            }
+        }
+    }
+
+    // the parser and dcoref run separately from the cheap annotators
+    boolean annotatesInParts() {
+        return selectiveParsing || corefWindowSentences > 0;
+    }
+
+    // settings that change annotations (empty for the defaults, so that their cache keys stay the same)
+    String cacheSignature() {
+        StringBuilder signature = new StringBuilder();
+        if (selectiveParsing) signature.append("selective;maxlen=").append(maxParseSentenceLength);
+        else if (maxParseSentenceLength > 0) signature.append("maxlen=").append(maxParseSentenceLength);
+        if (corefWindowSentences > 0)
+            signature.append(signature.length() > 0 ? ";" : "").append("corefWindow=").append(corefWindowSentences);
+        return signature.toString();
+    }
+
+    static StanfordCoreNLP newPipeline(String annotators) {
+        return newPipeline(annotators, 0);
+    }
+
+    /**
+     * StanfordCoreNLP creates the parser with the maxlen of the first pipeline that asks its annotator pool for
+     * one, and later pipelines get the same parser whatever their maxlen. The constructor builds every pipeline of
+     * an annotator from a fresh pool with the annotator's maxlen, so the setting always takes effect. Pipelines
+     * created directly share the process-wide pool, where the first of them decides maxlen.
+     */
+    static StanfordCoreNLP newPipeline(String annotators, int maxParseSentenceLength) {
         Properties props = new Properties();
-        props.setProperty("annotators", "tokenize, ssplit, pos, lemma, ner, parse, dcoref");
-        pipeline = new StanfordCoreNLP(props);
+        props.setProperty("annotators", annotators);
+        // parser.maxlen is the name in the bundled CoreNLP (it became parse.maxlen in later versions)
+        if (maxParseSentenceLength > 0) props.setProperty("parser.maxlen", String.valueOf(maxParseSentenceLength));
+        return new StanfordCoreNLP(props);
+    }
+
+    /**
+     * Runs the annotators of a pipeline one by one, each as its own single-annotator StanfordCoreNLP (which share
+     * the models of their CoreNLPAnnotator through its annotator pool), and records the time of each annotator.
+     */
+    static class TimedPipeline {
+        final String[] names;
+        final StanfordCoreNLP[] stages;
+        final PipelineMetrics metrics;
+
+        TimedPipeline(String annotators, int maxParseSentenceLength, PipelineMetrics metrics) {
+            this.metrics = metrics;
+            names = annotators.split("\\s*,\\s*");
+            stages = new StanfordCoreNLP[names.length];
+            for (int i = 0; i < names.length; i++) stages[i] = newPipeline(names[i], maxParseSentenceLength);
+        }
+
+        void annotate(Annotation document) {
+            for (int i = 0; i < stages.length; i++) {
+                long start = System.nanoTime();
+                stages[i].annotate(document);
+                metrics.recordStage(names[i], System.nanoTime() - start);
+            }
+        }
+    }
+
+    void annotate(StanfordCoreNLP pipeline, TimedPipeline timedPipeline, Annotation document) {
+        if (timedPipeline != null) timedPipeline.annotate(document);
+        else pipeline.annotate(document);
+    }
+
+    public PipelineMetrics getMetrics() {
+        return metrics;
     }
 
     public StanfordCoreNLP getPipeline() {
         return pipeline;
     }
 
+    public AnnotationCache getCache() {
+        return cache;
+    }
+
+    public SelectiveParsingStats getSelectiveParsingStats() {
+        return selectiveParsingStats;
+    }
+
+    /**
+     * Entity and relation mention patterns extracted from a single annotation of a document.
+     */
+    public static class MentionPatterns {
+        public final List<EntityMentionPattern> entityPatterns;
+        public final List<RelationMentionPattern> relationPatterns;
+
+        public MentionPatterns(List<EntityMentionPattern> entityPatterns, List<RelationMentionPattern> relationPatterns) {
+            this.entityPatterns = entityPatterns;
+            this.relationPatterns = relationPatterns;
+        }
+    }
+
+    /**
+     * Runs the full pipeline over the document text (only up to NER with selective parsing or coref windows).
+     * @param docText
+     * @return
+     */
+    public Annotation runPipeline(String docText) {
+        Annotation document = new Annotation(docText);
+        annotate(pipeline, timedPipeline, document);
+        return document;
+    }
+
+    /**
+     * Returns the cached annotation of the document text if there is one, otherwise runs the pipeline and
+     * caches its result.
+     * @param docText
+     * @return
+     */
+    public AnnotatedDocument annotate(String docText) {
+        if (cache != null) {
+            AnnotatedDocument cached = cache.get(docText);
+            if (cached != null) return cached;
+        }
+        AnnotatedDocument document = annotatesInParts() ? annotateInParts(docText) :
+                AnnotatedDocument.fromAnnotation(runPipeline(docText));
+        if (cache != null) {
+            try {
+                cache.put(docText, document);
+            } catch (IOException ioe) {
+                logger.warn("Cannot cache annotation in " + cache.getCacheDir() + ": " + ioe.getMessage());
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Runs the cheap annotators over the whole document, and the parser and dcoref over parts of it.
+     * <p/>
+     * With selective parsing, only sentences that have an allowed entity (see {@link CoreNLPUtils#NERS_TO_IGNORE})
+     * and are not too long are parsed. Documents without such sentences are not parsed at all. Mentions in
+     * skipped sentences are lost, which is the recall paid for the throughput; {@link SelectiveParsingStats}
+     * reports how much each filter skipped.
+     * <p/>
+     * With coref windows, the (selected) sentences are parsed and resolved in consecutive, non-overlapping windows
+     * of {@link #COREF_WINDOW_SENTENCES} sentences, so chains never span windows.
+     * @param docText
+     * @return
+     */
+    AnnotatedDocument annotateInParts(String docText) {
+        Annotation document = new Annotation(docText);
+        annotate(pipeline, timedPipeline, document);
+        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+
+        List<CoreMap> selectedSentences = new ArrayList<CoreMap>();
+        int[] sentNums = new int[sentences.size()];
+        if (selectiveParsing) selectiveParsingStats.documents.incrementAndGet();
+        for (int s = 0; s < sentences.size(); s++) {
+            CoreMap sentence = sentences.get(s);
+            if (selectiveParsing) {
+                List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+                selectiveParsingStats.sentences.incrementAndGet();
+                selectiveParsingStats.tokens.addAndGet(tokens.size());
+                if (!CoreNLPUtils.hasAllowedNER(tokens)) {
+                    selectiveParsingStats.sentencesWithoutEntities.incrementAndGet();
+                    continue;
+                }
+                if (maxParseSentenceLength > 0 && tokens.size() > maxParseSentenceLength) {
+                    selectiveParsingStats.sentencesTooLong.incrementAndGet();
+                    continue;
+                }
+                selectiveParsingStats.tokensParsed.addAndGet(tokens.size());
+            }
+            sentNums[selectedSentences.size()] = s + 1;
+            selectedSentences.add(sentence);
+        }
+        if (selectedSentences.isEmpty()) {
+            if (selectiveParsing) selectiveParsingStats.documentsSkipped.incrementAndGet();
+            return AnnotatedDocument.fromAnnotation(sentences, null, (int[]) null);
+        }
+
+        int windowSize = corefWindowSentences > 0 ? corefWindowSentences : selectedSentences.size();
+        List<Map<Integer, CorefChain>> graphs = new ArrayList<Map<Integer, CorefChain>>();
+        List<int[]> windowSentNums = new ArrayList<int[]>();
+        for (int begin = 0; begin < selectedSentences.size(); begin += windowSize) {
+            int end = Math.min(begin + windowSize, selectedSentences.size());
+            List<CoreMap> windowSentences = selectedSentences.subList(begin, end);
+            List<CoreLabel> windowTokens = new ArrayList<CoreLabel>();
+            for (CoreMap sentence : windowSentences)
+                windowTokens.addAll(sentence.get(CoreAnnotations.TokensAnnotation.class));
+
+            // the window's sentences are shared with the document, so they get their parses in place
+            Annotation window = new Annotation(docText);
+            window.set(CoreAnnotations.SentencesAnnotation.class, new ArrayList<CoreMap>(windowSentences));
+            window.set(CoreAnnotations.TokensAnnotation.class, windowTokens);
+            annotate(parsePipeline, timedParsePipeline, window);
+            graphs.add(window.get(CorefCoreAnnotations.CorefChainAnnotation.class));
+            windowSentNums.add(Arrays.copyOfRange(sentNums, begin, end));
+        }
+        return AnnotatedDocument.fromAnnotation(sentences, graphs, windowSentNums);
+    }
+
+    /**
+     * Annotates the document once and extracts both entity and relation mention patterns from it.
+     * @param filePath
+     * @param docText
+     * @return
+     */
+    public MentionPatterns getMentionPatterns(String filePath, String docText) {
+        long start = System.nanoTime();
+        AnnotatedDocument document = annotate(docText);
+        long extractionStart = System.nanoTime();
+        MentionPatterns patterns = new MentionPatterns(getEntityPatterns(filePath, document),
+                getRelationPatterns(filePath, document));
+        recordDocument(filePath, document, start, extractionStart);
+        return patterns;
+    }
+
+    void recordDocument(String filePath, AnnotatedDocument document, long start, long extractionStart) {
+        if (metrics == null) return;
+        long end = System.nanoTime();
+        metrics.recordStage("extraction", end - extractionStart);
+        metrics.recordDocument(filePath, document.numTokens(), end - start);
+    }
+
     /**
      * Schema: [filePath] [reprEntityPhrase] [reprEntityId] [reprHeadNER] [reprDependencies]
      * @param filePath
@@ -39,35 +329,39 @@ public class CoreNLPAnnotator {
      * @return
      */
     public List<String> getEntityMentionPatterns(String filePath, String docText) {
-        List<String> entPatterns = new ArrayList<String>();
-        Annotation document = new Annotation(docText);
-        pipeline.annotate(document);
+        return toTSV(getEntityPatterns(filePath, docText));
+    }
 
-        // these are all the sentences in this document
-        // a CoreMap is essentially a Map that uses class objects as keys and has values with custom types
-        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+    public static List<String> getEntityMentionPatterns(String filePath, AnnotatedDocument document) {
+        return toTSV(getEntityPatterns(filePath, document));
+    }
+
+    public List<EntityMentionPattern> getEntityPatterns(String filePath, String docText) {
+        long start = System.nanoTime();
+        AnnotatedDocument document = annotate(docText);
+        long extractionStart = System.nanoTime();
+        List<EntityMentionPattern> patterns = getEntityPatterns(filePath, document);
+        recordDocument(filePath, document, start, extractionStart);
+        return patterns;
+    }
+
+    public static List<EntityMentionPattern> getEntityPatterns(String filePath, AnnotatedDocument document) {
+        List<EntityMentionPattern> entPatterns = new ArrayList<EntityMentionPattern>();
 
-        // This is the coreference link graph
         // Each chain stores a set of mentions that link to each other,
-        // along with a method for getting the most representative mention
+        // along with the most representative mention
         // Both sentence and token offsets start at 1!
-        Map<Integer, CorefChain> graph = document.get(CorefCoreAnnotations.CorefChainAnnotation.class);
-        for (int chainNum : graph.keySet()) {
-            CorefChain chain = graph.get(chainNum);
-            CorefChain.CorefMention reprMention = chain.getRepresentativeMention();
-            if (CoreNLPUtils.isAllowedMentionNER(reprMention, sentences)) {
-                String reprPhrase = CoreNLPUtils.getMentionSpanForNER(reprMention, sentences);
-                String reprHeadNER = CoreNLPUtils.getNER(CoreNLPUtils.getHeadToken(reprMention, sentences));
-                String reprEntityId = reprPhrase.replace(' ', '_') + "##" + CoreNLPUtils.getMentionUniqID(filePath, reprMention);
-                ArrayList<String> reprMentionDeps = new ArrayList<String>();
-                for (CorefChain.CorefMention mention : chain.getCorefMentions()) {
-                    List<String> mentionDeps = CoreNLPUtils.getDependencies(mention, sentences, CoreNLPUtils.ALLOWED_DEP_TAGS, true);
-                    reprMentionDeps.addAll(mentionDeps);
+        for (AnnotatedDocument.Chain chain : document.chains) {
+            AnnotatedDocument.Mention reprMention = chain.representative;
+            if (CoreNLPUtils.isAllowedMentionNER(reprMention, document)) {
+                ArrayList<DependencyStep> reprMentionDeps = new ArrayList<DependencyStep>();
+                for (AnnotatedDocument.Mention mention : chain.mentions) {
+                    reprMentionDeps.addAll(CoreNLPUtils.getDependencySteps(mention, document, CoreNLPUtils.ALLOWED_DEP_TAGS));
                 }
                 if (reprMentionDeps.size() > 0) {
-                    String reprDepStr = StringUtils.join(reprMentionDeps, "|||");
-                    String tsvalue = filePath + "\t" + reprPhrase + "\t" + reprEntityId + "\t" + reprHeadNER + "\t" + reprDepStr;
-                    entPatterns.add(tsvalue);
+                    String reprPhrase = CoreNLPUtils.getMentionSpanForNER(reprMention, document);
+                    String reprHeadNER = CoreNLPUtils.getNER(reprMention, document);
+                    entPatterns.add(new EntityMentionPattern(filePath, reprPhrase, reprMention, reprHeadNER, reprMentionDeps));
                 }
             }
         }
@@ -75,59 +369,117 @@ public class CoreNLPAnnotator {
         return entPatterns;
     }
 
+    static List<String> toTSV(List<? extends MentionPattern> patterns) {
+        List<String> rows = new ArrayList<String>(patterns.size());
+        for (MentionPattern pattern : patterns) rows.add(pattern.toTSV());
+        return rows;
+    }
+
+    /**
+     * Schema: [filePath] [srcEntityPhrase] [srcEntityId] [srcNER] [srcDestEdgeWalks] [destEntityPhrase] [destEntityId] [destNER]
+     * @param filePath
+     * @param docText
+     * @return
+     */
     public List<String> getRelationMentionPatterns(String filePath, String docText) {
-        List<String> relPatterns = new ArrayList<String>();
-        Annotation document = new Annotation(docText);
-        pipeline.annotate(document);
+        return toTSV(getRelationPatterns(filePath, docText));
+    }
 
-        // these are all the sentences in this document
-        // a CoreMap is essentially a Map that uses class objects as keys and has values with custom types
-        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+    /**
+     * An entity chain (one with an allowed representative mention) with its output fields computed once and its
+     * mentions bucketed by sentence.
+     */
+    static class EntityChain {
+        final int order;
+        final AnnotatedDocument.Chain chain;
+        final String phrase;
+        final String ner;
+        // sentence number -> mentions of the chain in that sentence (in chain order)
+        final HashMap<Integer, List<AnnotatedDocument.Mention>> mentionsBySentence =
+                new HashMap<Integer, List<AnnotatedDocument.Mention>>();
+
+        EntityChain(int order, AnnotatedDocument.Chain chain, AnnotatedDocument document) {
+            this.order = order;
+            this.chain = chain;
+            phrase = CoreNLPUtils.getMentionSpanForNER(chain.representative, document);
+            ner = CoreNLPUtils.getNER(chain.representative, document);
+            for (AnnotatedDocument.Mention mention : chain.mentions) {
+                List<AnnotatedDocument.Mention> mentions = mentionsBySentence.get(mention.sentNum);
+                if (mentions == null) {
+                    mentions = new ArrayList<AnnotatedDocument.Mention>();
+                    mentionsBySentence.put(mention.sentNum, mentions);
+                }
+                mentions.add(mention);
+            }
+        }
+    }
+
+    public static List<String> getRelationMentionPatterns(String filePath, AnnotatedDocument document) {
+        return toTSV(getRelationPatterns(filePath, document));
+    }
+
+    public List<RelationMentionPattern> getRelationPatterns(String filePath, String docText) {
+        long start = System.nanoTime();
+        AnnotatedDocument document = annotate(docText);
+        long extractionStart = System.nanoTime();
+        List<RelationMentionPattern> patterns = getRelationPatterns(filePath, document);
+        recordDocument(filePath, document, start, extractionStart);
+        return patterns;
+    }
+
+    public static List<RelationMentionPattern> getRelationPatterns(String filePath, AnnotatedDocument document) {
+        List<RelationMentionPattern> relPatterns = new ArrayList<RelationMentionPattern>();
 
-        // This is the coreference link graph
         // Each chain stores a set of mentions that link to each other,
-        // along with a method for getting the most representative mention
+        // along with the most representative mention
         // Both sentence and token offsets start at 1!
-        java.util.Map<Integer, CorefChain> graph = document.get(CorefCoreAnnotations.CorefChainAnnotation.class);
-        for (int srcChainNum : graph.keySet()) {
-            CorefChain srcChain = graph.get(srcChainNum);
-            CorefChain.CorefMention srcEntity = srcChain.getRepresentativeMention();
-            if (!CoreNLPUtils.isAllowedMentionNER(srcEntity, sentences))
-                continue;
+        ArrayList<EntityChain> entities = new ArrayList<EntityChain>();
+        for (AnnotatedDocument.Chain chain : document.chains) {
+            if (CoreNLPUtils.isAllowedMentionNER(chain.representative, document))
+                entities.add(new EntityChain(entities.size(), chain, document));
+        }
 
-            String srcEntityPhrase = CoreNLPUtils.getMentionSpanForNER(srcEntity, sentences);
-            String srcNER = CoreNLPUtils.getNER(CoreNLPUtils.getHeadToken(srcEntity, sentences));
-            String srcEntityId = srcEntityPhrase.replace(' ', '_') + "##" + CoreNLPUtils.getMentionUniqID(filePath, srcEntity);
-            for (int destChainNum : graph.keySet()) {
-                CorefChain destChain = graph.get(destChainNum);
-                CorefChain.CorefMention destEntity = destChain.getRepresentativeMention();
-                if (!CoreNLPUtils.isAllowedMentionNER(destEntity, sentences))
-                    continue;
+        // edge walks only connect mentions in the same sentence, so only entities sharing a sentence can pair up
+        HashMap<Integer, List<EntityChain>> entitiesBySentence = new HashMap<Integer, List<EntityChain>>();
+        for (EntityChain entity : entities) {
+            for (int sentNum : entity.mentionsBySentence.keySet()) {
+                List<EntityChain> sentenceEntities = entitiesBySentence.get(sentNum);
+                if (sentenceEntities == null) {
+                    sentenceEntities = new ArrayList<EntityChain>();
+                    entitiesBySentence.put(sentNum, sentenceEntities);
+                }
+                sentenceEntities.add(entity);
+            }
+        }
 
-                String destEntityPhrase = CoreNLPUtils.getMentionSpanForNER(destEntity, sentences);
-                String destNER = CoreNLPUtils.getNER(CoreNLPUtils.getHeadToken(destEntity, sentences));
-                String destEntityId = destEntityPhrase.replace(' ', '_') + "##" + CoreNLPUtils.getMentionUniqID(filePath, destEntity);
-                ArrayList<String> srcDestEdgeWalks = new ArrayList<String>();
+        boolean[] isCandidate = new boolean[entities.size()];
+        for (EntityChain src : entities) {
+            // destinations in chain order, as in the all-pairs loop; a chain never relates to itself
+            Arrays.fill(isCandidate, false);
+            for (int sentNum : src.mentionsBySentence.keySet()) {
+                for (EntityChain dest : entitiesBySentence.get(sentNum)) isCandidate[dest.order] = true;
+            }
+            isCandidate[src.order] = false;
 
-                for (CorefChain.CorefMention srcMention : srcChain.getCorefMentions()) {
-                    // String srcMentionId = CoreNLPUtils.getMentionUniqID(filePath, srcMention);
-                    // String srcPhrase = CoreNLPUtils.getMentionSpanForNER(srcMention, sentences);
+            for (int d = 0; d < isCandidate.length; d++) {
+                if (!isCandidate[d]) continue;
+                EntityChain dest = entities.get(d);
+                ArrayList<List<DependencyStep>> srcDestEdgeWalks = new ArrayList<List<DependencyStep>>();
 
-                    for (CorefChain.CorefMention destMention : destChain.getCorefMentions()) {
-                        // String destMentionId = CoreNLPUtils.getMentionUniqID(filePath, destMention);
-                        // String destPhrase = CoreNLPUtils.getMentionSpanForNER(destMention, sentences);
-                        List<String> edgeWalk = CoreNLPUtils.getEdgeWalk(srcMention, destMention, sentences, true);
+                for (AnnotatedDocument.Mention srcMention : src.chain.mentions) {
+                    List<AnnotatedDocument.Mention> destMentions = dest.mentionsBySentence.get(srcMention.sentNum);
+                    if (destMentions == null) continue;
+                    for (AnnotatedDocument.Mention destMention : destMentions) {
+                        List<DependencyStep> edgeWalk = CoreNLPUtils.getEdgeWalkSteps(srcMention, destMention, document);
                         if (edgeWalk.size() > 0) {
-                            srcDestEdgeWalks.add(StringUtils.join(edgeWalk, ""));
+                            srcDestEdgeWalks.add(edgeWalk);
                         }
                     }
                 }
 
                 if (srcDestEdgeWalks.size() > 0) {
-                    String srcDestEdgeWalkStr = StringUtils.join(srcDestEdgeWalks, "|||");
-                    String tsvalue = filePath + "\t" + srcEntityPhrase + "\t" + srcEntityId + "\t" + srcNER + "\t" +
-                            srcDestEdgeWalkStr + "\t" + destEntityPhrase + "\t" + destEntityId + "\t" + destNER;
-                    relPatterns.add(tsvalue);
+                    relPatterns.add(new RelationMentionPattern(filePath, src.phrase, src.chain.representative, src.ner,
+                            srcDestEdgeWalks, dest.phrase, dest.chain.representative, dest.ner));
                 }
             }
         }
@@ -160,8 +512,7 @@ public class CoreNLPAnnotator {
                 "Most recently, France's national plan for allocating carbon emission credits to businesses had to be " +
                 "revised after the European Union rejected it as too generous.";
 
-        Annotation document = new Annotation(text);
-        annotator.getPipeline().annotate(document);
+        Annotation document = annotator.runPipeline(text);
 
         // these are all the sentences in this document
         // a CoreMap is essentially a Map that uses class objects as keys and has values with custom types
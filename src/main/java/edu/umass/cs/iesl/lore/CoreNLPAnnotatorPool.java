@@ -0,0 +1,222 @@
+package edu.umass.cs.iesl.lore;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bounded checkout/return pool of {@link CoreNLPAnnotator}s. A StanfordCoreNLP pipeline is not thread-safe, so
+ * every worker checks out its own annotator for the duration of a document and returns it afterwards.
+ * Annotators are created lazily (at most <code>capacity</code> of them) and the pool is shared per process, so
+ * every annotator loads its own copy of the models once and keeps it across documents and jobs. Heap use grows
+ * with the capacity accordingly. All annotators share the options the pool was created with.
+ * <p/>
+ * {@link #run(String, long, Task)} bounds the time spent on a document: the task runs on a watchdog thread and
+ * is abandoned when it misses its deadline. CoreNLP cannot be interrupted, so the abandoned task keeps its
+ * annotator, and the annotator its place in the pool, until it finishes in the background; meanwhile the pool
+ * may create a replacement, which it drops again once the abandoned annotator comes back. At most
+ * {@link #getMaxAbandoned()} documents are abandoned at a time (so at most capacity + maxAbandoned annotators
+ * exist): beyond that, a document that misses its deadline is waited for like one without a deadline.
+ *
+ * @author kedarb
+ * @since 11/20/11
+ */
+public class CoreNLPAnnotatorPool {
+    public static final int DEFAULT_MAX_ABANDONED = 2;
+
+    private static CoreNLPAnnotatorPool instance = null;
+
+    private final ArrayDeque<CoreNLPAnnotator> available = new ArrayDeque<CoreNLPAnnotator>();
+    private final Properties options;
+    private final SelectiveParsingStats selectiveParsingStats = new SelectiveParsingStats();
+    private final Set<CoreNLPAnnotator> abandoned = new HashSet<CoreNLPAnnotator>();
+    private final ExecutorService watchdog = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "annotator-watchdog");
+            // abandoned documents must not keep the JVM alive
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private int capacity;
+    private int maxAbandoned = DEFAULT_MAX_ABANDONED;
+    private int created = 0;
+
+    public CoreNLPAnnotatorPool(int capacity, Properties options) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity=" + capacity + " should be positive");
+        this.capacity = capacity;
+        this.options = new Properties();
+        this.options.putAll(options);
+    }
+
+    /**
+     * Returns the process-wide pool, growing its capacity if a job asks for more annotators than before.
+     * @throws IllegalArgumentException if the pool was created with other options
+     */
+    public static synchronized CoreNLPAnnotatorPool getInstance(int capacity, Properties options) {
+        if (instance == null) {
+            instance = new CoreNLPAnnotatorPool(capacity, options);
+        } else {
+            if (!instance.options.equals(options)) {
+                throw new IllegalArgumentException("Annotator pool was created with options " + instance.options +
+                        ", cannot use it with " + options);
+            }
+            instance.ensureCapacity(capacity);
+        }
+        return instance;
+    }
+
+    public synchronized void ensureCapacity(int capacity) {
+        if (capacity > this.capacity) this.capacity = capacity;
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getMaxAbandoned() {
+        return maxAbandoned;
+    }
+
+    /**
+     * @param maxAbandoned number of documents that may be abandoned at a time (0 to always wait for documents)
+     */
+    public synchronized void setMaxAbandoned(int maxAbandoned) {
+        if (maxAbandoned < 0)
+            throw new IllegalArgumentException("maxAbandoned=" + maxAbandoned + " should not be negative");
+        this.maxAbandoned = maxAbandoned;
+    }
+
+    public SelectiveParsingStats getSelectiveParsingStats() {
+        return selectiveParsingStats;
+    }
+
+    public synchronized int getCreated() {
+        return created;
+    }
+
+    /**
+     * Checks out an annotator, creating one if the pool has not reached its capacity yet (not counting abandoned
+     * annotators), or else blocking until another worker returns one.
+     */
+    public CoreNLPAnnotator checkout() throws InterruptedException {
+        synchronized (this) {
+            while (available.isEmpty() && created >= capacity + abandoned.size()) wait();
+            if (!available.isEmpty()) return available.removeFirst();
+            created++;
+        }
+        // load models outside the pool's lock so that other workers can check annotators in and out meanwhile
+        try {
+            return new CoreNLPAnnotator(options, selectiveParsingStats);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                created--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    public synchronized void checkin(CoreNLPAnnotator annotator) {
+        if (abandoned.remove(annotator) && created > capacity + abandoned.size()) {
+            // a replacement has taken its place
+            created--;
+        } else {
+            available.addLast(annotator);
+        }
+        notifyAll();
+    }
+
+    // whether a task run with a deadline has finished, guarded by the pool
+    private static class TimedTask {
+        boolean finished = false;
+    }
+
+    private synchronized void finish(CoreNLPAnnotator annotator, TimedTask timedTask) {
+        timedTask.finished = true;
+        checkin(annotator);
+    }
+
+    /**
+     * Takes an annotator that is still in use by a document past its deadline out of the pool, unless the
+     * document has finished meanwhile or too many documents are abandoned already.
+     * @return whether the document was abandoned
+     */
+    private synchronized boolean abandon(CoreNLPAnnotator annotator, TimedTask timedTask) {
+        if (timedTask.finished || abandoned.size() >= maxAbandoned) return false;
+        abandoned.add(annotator);
+        // a replacement may be created now
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * @return the number of abandoned documents that are still being annotated in the background
+     */
+    public synchronized int getNumAbandoned() {
+        return abandoned.size();
+    }
+
+    public interface Task<T> {
+        T run(CoreNLPAnnotator annotator) throws Exception;
+    }
+
+    /**
+     * Runs the task with a checked out annotator.
+     * @param docId         identifies the document in the timeout exception
+     * @param timeoutMillis time budget of the task (no limit if not positive)
+     * @throws DocumentTimeoutException if the task did not finish in time
+     */
+    public <T> T run(String docId, long timeoutMillis, final Task<T> task) throws Exception {
+        final CoreNLPAnnotator annotator = checkout();
+        if (timeoutMillis <= 0) {
+            try {
+                return task.run(annotator);
+            } finally {
+                checkin(annotator);
+            }
+        }
+
+        final TimedTask timedTask = new TimedTask();
+        Future<T> future;
+        try {
+            future = watchdog.submit(new Callable<T>() {
+                public T call() throws Exception {
+                    try {
+                        return task.run(annotator);
+                    } finally {
+                        finish(annotator, timedTask);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            checkin(annotator);
+            throw e;
+        }
+        try {
+            try {
+                return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException te) {
+                if (abandon(annotator, timedTask)) {
+                    future.cancel(true);
+                    throw new DocumentTimeoutException(docId, timeoutMillis);
+                }
+                // finished right after its deadline, or too many documents are abandoned already
+                return future.get();
+            }
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw (Error) cause;
+        }
+    }
+}
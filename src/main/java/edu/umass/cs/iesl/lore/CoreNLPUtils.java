@@ -20,7 +20,7 @@ import java.util.List;
  * @since 10/23/11
  */
 public class CoreNLPUtils {
-    static final HashSet<String> ALLOWED_DEP_TAGS = new HashSet<String>(Arrays.asList(
+    public static final HashSet<String> ALLOWED_DEP_TAGS = new HashSet<String>(Arrays.asList(
             "NN", "NNS", "JJ", "VB", "VBD", "VBG", "VBN", "VBZ", "ADJ"));
     static final HashSet<String> NERS_TO_IGNORE = new HashSet<String>(Arrays.asList(
             "O", "TIME", "DURATION", "DATE", "NUMBER", "MONEY", "ORDINAL"));
@@ -115,6 +115,14 @@ public class CoreNLPUtils {
         return headDependencies;
     }
 
+    public static boolean hasAllowedNER(List<CoreLabel> tokens) {
+        for (CoreLabel token : tokens) {
+            String ner = getNER(token);
+            if (ner != null && !NERS_TO_IGNORE.contains(ner)) return true;
+        }
+        return false;
+    }
+
     public static boolean isAllowedMentionNER(CorefChain.CorefMention mention, List<CoreMap> sentences) {
         String ner = getNER(getHeadToken(mention, sentences));
         return !NERS_TO_IGNORE.contains(ner);
@@ -160,4 +168,117 @@ public class CoreNLPUtils {
     public static String getMentionUniqID(String filePath, CorefChain.CorefMention mention) {
         return filePath + "##" + mention.sentNum + "[" + mention.startIndex + "," + mention.endIndex + ")##head@" + mention.headIndex;
     }
+
+    // the helpers below mirror the ones above on the compact AnnotatedDocument view
+
+    public static String getNER(AnnotatedDocument.Mention mention, AnnotatedDocument document) {
+        return document.getSentence(mention).ners[mention.headIndex - 1];
+    }
+
+    public static int getIndexedWord(int headIndex, AnnotatedDocument.Sentence sentence) {
+        return sentence.getIndex().getVertex(headIndex);
+    }
+
+    public static String getMentionSpanForNER(AnnotatedDocument.Mention mention, AnnotatedDocument document) {
+        AnnotatedDocument.Sentence sentence = document.getSentence(mention);
+        String headNer = sentence.ners[mention.headIndex - 1];
+        if (headNer.equals("O")) return sentence.words[mention.headIndex - 1];
+        else {
+            int begin = mention.headIndex;
+            while (begin >= mention.startIndex && sentence.ners[begin - 1].equals(headNer)) {
+                begin--;
+            }
+            begin++;
+            int end = mention.headIndex;
+            while (end < mention.endIndex && sentence.ners[end - 1].equals(headNer)) {
+                end++;
+            }
+            StringBuilder builder = new StringBuilder();
+            builder.append(sentence.words[begin - 1]);
+            for (int i = begin + 1; i < end; i++) {
+                builder.append(' ').append(sentence.words[i - 1]);
+            }
+            return builder.toString();
+        }
+    }
+
+    public static List<String> getDependencies(AnnotatedDocument.Mention mention, AnnotatedDocument document,
+                                               HashSet<String> allowedDependencyTags, boolean useLabeledEdge) {
+        return toStrings(getDependencySteps(mention, document, allowedDependencyTags), useLabeledEdge);
+    }
+
+    public static List<DependencyStep> getDependencySteps(AnnotatedDocument.Mention mention, AnnotatedDocument document,
+                                                          HashSet<String> allowedDependencyTags) {
+        AnnotatedDocument.Sentence sentence = document.getSentence(mention);
+        int headIndex = mention.headIndex;
+        ArrayList<DependencyStep> headDependencies = new ArrayList<DependencyStep>();
+        for (int e : sentence.getIndex().getIncidentEdges(headIndex)) {
+            int dep = sentence.edgeDependents[e];
+            int gov = sentence.edgeGovernors[e];
+            String relation = sentence.edgeRelations[e];
+            if (dep == headIndex &&
+                    (allowedDependencyTags == null || allowedDependencyTags.contains(sentence.tags[gov - 1]))) {
+                headDependencies.add(new DependencyStep(true, relation, String.valueOf(sentence.lemmas[gov - 1])));
+            }
+            if (gov == headIndex &&
+                    (allowedDependencyTags == null || allowedDependencyTags.contains(sentence.tags[dep - 1]))) {
+                headDependencies.add(new DependencyStep(false, relation, String.valueOf(sentence.lemmas[dep - 1])));
+            }
+        }
+        return headDependencies;
+    }
+
+    static List<String> toStrings(List<DependencyStep> steps, boolean useLabeledEdge) {
+        List<String> strings = new ArrayList<String>(steps.size());
+        for (DependencyStep step : steps) strings.add(step.toString(useLabeledEdge));
+        return strings;
+    }
+
+    public static boolean isAllowedMentionNER(AnnotatedDocument.Mention mention, AnnotatedDocument document) {
+        return !NERS_TO_IGNORE.contains(getNER(mention, document));
+    }
+
+    public static List<String> getEdgeWalk(AnnotatedDocument.Mention src, AnnotatedDocument.Mention dest,
+                                           AnnotatedDocument document, boolean useLabeledEdge) {
+        return toStrings(getEdgeWalkSteps(src, dest, document), useLabeledEdge);
+    }
+
+    public static List<DependencyStep> getEdgeWalkSteps(AnnotatedDocument.Mention src, AnnotatedDocument.Mention dest,
+                                                        AnnotatedDocument document) {
+        List<DependencyStep> edgeWalked = new ArrayList<DependencyStep>();
+        // ignore different sentence mentions
+        if (src.sentNum != dest.sentNum) return edgeWalked;
+        // ignore relations between same entity
+        if (src.corefClusterID == dest.corefClusterID) return edgeWalked;
+
+        AnnotatedDocument.Sentence sentence = document.getSentence(src);
+        int isrc = getIndexedWord(src.headIndex, sentence);
+        int idest = getIndexedWord(dest.headIndex, sentence);
+        int[] edges = sentence.getIndex().getShortestPathEdges(isrc, idest);
+        // if no shortest path, return empty
+        if (edges == null || edges.length == 0)
+            return edgeWalked;
+
+        // walk along edges
+        int currIndex = isrc;
+        for (int e : edges) {
+            int idep = sentence.edgeDependents[e];
+            int igov = sentence.edgeGovernors[e];
+            // gov -> dep
+            if (idep == currIndex) {
+                String lemma = igov != idest ? String.valueOf(sentence.lemmas[igov - 1]) : null;
+                edgeWalked.add(new DependencyStep(true, sentence.edgeRelations[e], lemma));
+                currIndex = igov;
+            } else if (igov == currIndex) {
+                String lemma = idep != idest ? String.valueOf(sentence.lemmas[idep - 1]) : null;
+                edgeWalked.add(new DependencyStep(false, sentence.edgeRelations[e], lemma));
+                currIndex = idep;
+            }
+        }
+        return edgeWalked;
+    }
+
+    public static String getMentionUniqID(String filePath, AnnotatedDocument.Mention mention) {
+        return filePath + "##" + mention.sentNum + "[" + mention.startIndex + "," + mention.endIndex + ")##head@" + mention.headIndex;
+    }
 }
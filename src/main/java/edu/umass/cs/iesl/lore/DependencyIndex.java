@@ -0,0 +1,162 @@
+package edu.umass.cs.iesl.lore;
+
+import org.jgrapht.util.FibonacciHeap;
+import org.jgrapht.util.FibonacciHeapNode;
+
+import java.util.Arrays;
+
+/**
+ * Per-sentence index over the dependency edges of an {@link AnnotatedDocument.Sentence}: the graph vertex of
+ * every token, the incident edges of every token keyed by governor and by dependent (in edge list order), and
+ * shortest paths of at most {@link CoreNLPUtils#MAX_PATH_LENGTH} edges computed once per source vertex, which
+ * are those SemanticGraph#getShortestPathEdges finds, see {@link #getShortestPathEdges}. Built lazily by
+ * {@link AnnotatedDocument.Sentence#getIndex()}; not thread-safe.
+ *
+ * @author kedarb
+ * @since 12/04/11
+ */
+public class DependencyIndex {
+    private final AnnotatedDocument.Sentence sentence;
+    // token index -> graph vertex (the first root if the token is not in the graph)
+    private final int[] vertexByToken;
+    // edges with token i as governor are govEdges[govOffsets[i]] ... govEdges[govOffsets[i + 1] - 1]
+    private final int[] govOffsets;
+    private final int[] govEdges;
+    private final int[] depOffsets;
+    private final int[] depEdges;
+    // the same in the order the edges were added to the graph
+    private final int[] addedGovOffsets;
+    private final int[] addedGovEdges;
+    private final int[] addedDepOffsets;
+    private final int[] addedDepEdges;
+    // merged incident edges per vertex (computed on demand)
+    private final int[][] incidentEdges;
+    // shortest path search results per source vertex (computed on demand)
+    private final int[][] parentEdges;
+    private final int[][] distances;
+
+    public DependencyIndex(AnnotatedDocument.Sentence sentence) {
+        this.sentence = sentence;
+        int numVertices = sentence.numTokens() + 1;
+        vertexByToken = new int[numVertices];
+        Arrays.fill(vertexByToken, sentence.firstRoot);
+        for (int vertex : sentence.vertices) {
+            if (vertex < numVertices) vertexByToken[vertex] = vertex;
+        }
+        govOffsets = new int[numVertices + 1];
+        govEdges = new int[sentence.numEdges()];
+        invert(sentence.edgeGovernors, null, govOffsets, govEdges);
+        depOffsets = new int[numVertices + 1];
+        depEdges = new int[sentence.numEdges()];
+        invert(sentence.edgeDependents, null, depOffsets, depEdges);
+        addedGovOffsets = new int[numVertices + 1];
+        addedGovEdges = new int[sentence.numEdges()];
+        invert(sentence.edgeGovernors, sentence.edgeOrder, addedGovOffsets, addedGovEdges);
+        addedDepOffsets = new int[numVertices + 1];
+        addedDepEdges = new int[sentence.numEdges()];
+        invert(sentence.edgeDependents, sentence.edgeOrder, addedDepOffsets, addedDepEdges);
+        incidentEdges = new int[numVertices][];
+        parentEdges = new int[numVertices][];
+        distances = new int[numVertices][];
+    }
+
+    // counting sort of edge numbers by endpoint, which keeps them in the given order (edge list order if null)
+    private static void invert(int[] endpoints, int[] order, int[] offsets, int[] edges) {
+        for (int endpoint : endpoints) offsets[endpoint + 1]++;
+        for (int i = 1; i < offsets.length; i++) offsets[i] += offsets[i - 1];
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int i = 0; i < endpoints.length; i++) {
+            int e = order == null ? i : order[i];
+            edges[next[endpoints[e]]++] = e;
+        }
+    }
+
+    public AnnotatedDocument.Sentence getSentence() {
+        return sentence;
+    }
+
+    public int getVertex(int tokenIndex) {
+        return tokenIndex < vertexByToken.length ? vertexByToken[tokenIndex] : sentence.firstRoot;
+    }
+
+    /**
+     * Edges incident on the vertex in edge list order; an edge from the vertex to itself appears once.
+     */
+    public int[] getIncidentEdges(int vertex) {
+        if (incidentEdges[vertex] == null) incidentEdges[vertex] = mergeIncidentEdges(vertex);
+        return incidentEdges[vertex];
+    }
+
+    private int[] mergeIncidentEdges(int vertex) {
+        int govBegin = govOffsets[vertex], govEnd = govOffsets[vertex + 1];
+        int depBegin = depOffsets[vertex], depEnd = depOffsets[vertex + 1];
+        int[] incident = new int[(govEnd - govBegin) + (depEnd - depBegin)];
+        int n = 0;
+        while (govBegin < govEnd || depBegin < depEnd) {
+            int govEdge = govBegin < govEnd ? govEdges[govBegin] : Integer.MAX_VALUE;
+            int depEdge = depBegin < depEnd ? depEdges[depBegin] : Integer.MAX_VALUE;
+            if (govEdge <= depEdge) govBegin++;
+            if (depEdge <= govEdge) depBegin++;
+            incident[n++] = Math.min(govEdge, depEdge);
+        }
+        return n == incident.length ? incident : Arrays.copyOf(incident, n);
+    }
+
+    /**
+     * Closest-first search from the source, as SemanticGraph#getShortestPathEdges does it (with jgrapht, over the
+     * graph as an undirected one): vertices are taken off a {@link FibonacciHeap} keyed by distance, and the
+     * incoming and then the outgoing edges of each are followed in the order they were added to the graph. Where
+     * several paths are equally short, this picks the same one.
+     */
+    private void search(int source) {
+        int numVertices = vertexByToken.length;
+        int[] parentEdge = new int[numVertices];
+        int[] distance = new int[numVertices];
+        Arrays.fill(distance, -1);
+        FibonacciHeap<Integer> heap = new FibonacciHeap<Integer>();
+        heap.insert(new FibonacciHeapNode<Integer>(source), 0);
+        distance[source] = 0;
+        while (!heap.isEmpty()) {
+            int curr = heap.removeMin().getData();
+            if (distance[curr] == CoreNLPUtils.MAX_PATH_LENGTH) break;
+            visit(curr, addedDepOffsets, addedDepEdges, heap, parentEdge, distance);
+            visit(curr, addedGovOffsets, addedGovEdges, heap, parentEdge, distance);
+        }
+        parentEdges[source] = parentEdge;
+        distances[source] = distance;
+    }
+
+    private void visit(int curr, int[] offsets, int[] edges, FibonacciHeap<Integer> heap, int[] parentEdge,
+                       int[] distance) {
+        for (int i = offsets[curr]; i < offsets[curr + 1]; i++) {
+            int e = edges[i];
+            int next = sentence.edgeGovernors[e] == curr ? sentence.edgeDependents[e] : sentence.edgeGovernors[e];
+            // with unit edge weights, the first vertex to reach another is on a shortest path to it
+            if (distance[next] >= 0) continue;
+            distance[next] = distance[curr] + 1;
+            parentEdge[next] = e;
+            heap.insert(new FibonacciHeapNode<Integer>(next), distance[next]);
+        }
+    }
+
+    /**
+     * Shortest undirected path of at most {@link CoreNLPUtils#MAX_PATH_LENGTH} edges between two vertices, the
+     * one SemanticGraph#getShortestPathEdges gives for the graph the sentence was built from.
+     *
+     * @return the edge numbers along the path, or null if there is none
+     */
+    public int[] getShortestPathEdges(int source, int target) {
+        if (source == target) return null;
+        if (distances[source] == null) search(source);
+        int[] distance = distances[source];
+        int[] parentEdge = parentEdges[source];
+        if (distance[target] < 0) return null;
+        int[] path = new int[distance[target]];
+        for (int v = target, i = path.length - 1; i >= 0; i--) {
+            int e = parentEdge[v];
+            path[i] = e;
+            v = sentence.edgeGovernors[e] == v ? sentence.edgeDependents[e] : sentence.edgeGovernors[e];
+        }
+        return path;
+    }
+}
@@ -0,0 +1,32 @@
+package edu.umass.cs.iesl.lore;
+
+/**
+ * One labeled dependency edge taken from a mention head: <code>&lt;-rel-lemma</code> when walking from a dependent
+ * to its governor, <code>-rel-&gt;lemma</code> the other way. The lemma is null when omitted (the last step of an
+ * edge walk ends on the destination mention).
+ *
+ * @author kedarb
+ * @since 01/08/12
+ */
+public class DependencyStep {
+    public final boolean toGovernor;
+    public final String relation;
+    public final String lemma;
+
+    public DependencyStep(boolean toGovernor, String relation, String lemma) {
+        this.toGovernor = toGovernor;
+        this.relation = relation;
+        this.lemma = lemma;
+    }
+
+    public String toString(boolean useLabeledEdge) {
+        String edgeStr = toGovernor ? "<-" + (useLabeledEdge ? relation : "") + "-" :
+                "-" + (useLabeledEdge ? relation : "") + "->";
+        return lemma == null ? edgeStr : edgeStr + lemma;
+    }
+
+    @Override
+    public String toString() {
+        return toString(true);
+    }
+}
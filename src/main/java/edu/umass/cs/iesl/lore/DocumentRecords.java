@@ -0,0 +1,76 @@
+package edu.umass.cs.iesl.lore;
+
+/**
+ * Line-oriented document records used for corpora packed into a few large files: one document per line as
+ * <code>[docId] TAB [escaped text]</code>, where backslash, tab, newline and carriage return in the text are
+ * escaped as <code>\\</code>, <code>\t</code>, <code>\n</code> and <code>\r</code>. Records files end with
+ * {@link #EXTENSION} rather than .txt, so that scans for document files never take them for documents.
+ *
+ * @author kedarb
+ * @since 12/11/11
+ */
+public class DocumentRecords {
+    public static final String EXTENSION = ".ldr";
+
+    public static String format(String docId, String text) {
+        return docId + "\t" + escape(text);
+    }
+
+    public static String getDocId(String record) {
+        return record.substring(0, record.indexOf('\t'));
+    }
+
+    public static String getText(String record) {
+        return unescape(record.substring(record.indexOf('\t') + 1));
+    }
+
+    public static String escape(String text) {
+        StringBuilder builder = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                default:
+                    builder.append(ch);
+            }
+        }
+        return builder.toString();
+    }
+
+    public static String unescape(String escaped) {
+        StringBuilder builder = new StringBuilder(escaped.length());
+        for (int i = 0; i < escaped.length(); i++) {
+            char ch = escaped.charAt(i);
+            if (ch != '\\' || i + 1 == escaped.length()) {
+                builder.append(ch);
+                continue;
+            }
+            char next = escaped.charAt(++i);
+            switch (next) {
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                default:
+                    builder.append(next);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package edu.umass.cs.iesl.lore;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Documents not to process again, one per line as <code>[docId] TAB [reason]</code>. Entries are appended as
+ * soon as they are added, so that a rerun of a job skips the documents that made earlier runs stall.
+ *
+ * @author kedarb
+ * @since 02/05/12
+ */
+public class DocumentSkipList {
+    private final File file;
+    private final Set<String> docIds = new HashSet<String>();
+
+    public DocumentSkipList(File file) throws IOException {
+        this.file = file;
+        if (file.isFile()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (line.length() > 0) docIds.add(tab < 0 ? line : line.substring(0, tab));
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    public synchronized boolean contains(String docId) {
+        return docIds.contains(docId);
+    }
+
+    public synchronized int size() {
+        return docIds.size();
+    }
+
+    public synchronized void add(String docId, String reason) throws IOException {
+        if (!docIds.add(docId)) return;
+        if (file.getAbsoluteFile().getParentFile() != null) file.getAbsoluteFile().getParentFile().mkdirs();
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+        try {
+            writer.println(docId + "\t" + reason);
+        } finally {
+            writer.close();
+        }
+        if (writer.checkError()) throw new IOException("Cannot append to skip list " + file.getAbsolutePath());
+    }
+}
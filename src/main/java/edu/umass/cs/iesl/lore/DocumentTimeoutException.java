@@ -0,0 +1,26 @@
+package edu.umass.cs.iesl.lore;
+
+/**
+ * Thrown when a document was abandoned because it took longer than its time budget.
+ *
+ * @author kedarb
+ * @since 02/05/12
+ */
+public class DocumentTimeoutException extends RuntimeException {
+    private final String docId;
+    private final long timeoutMillis;
+
+    public DocumentTimeoutException(String docId, long timeoutMillis) {
+        super("Document " + docId + " abandoned after " + timeoutMillis + " millis");
+        this.docId = docId;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public String getDocId() {
+        return docId;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
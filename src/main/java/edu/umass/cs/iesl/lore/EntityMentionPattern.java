@@ -0,0 +1,39 @@
+package edu.umass.cs.iesl.lore;
+
+import java.util.List;
+
+/**
+ * Schema: [filePath] [reprEntityPhrase] [reprEntityId] [reprHeadNER] [reprDependencies]
+ *
+ * @author kedarb
+ * @since 01/08/12
+ */
+public class EntityMentionPattern extends MentionPattern {
+    public final String phrase;
+    public final AnnotatedDocument.Mention mention;
+    public final String ner;
+    // dependencies of all mentions of the entity
+    public final List<DependencyStep> dependencies;
+
+    public EntityMentionPattern(String filePath, String phrase, AnnotatedDocument.Mention mention, String ner,
+                                List<DependencyStep> dependencies) {
+        super(filePath);
+        this.phrase = phrase;
+        this.mention = mention;
+        this.ner = ner;
+        this.dependencies = dependencies;
+    }
+
+    public String getEntityId() {
+        return getEntityId(phrase, filePath, mention);
+    }
+
+    @Override
+    public String toTSV() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(filePath).append('\t').append(phrase).append('\t').append(getEntityId()).append('\t')
+                .append(ner).append('\t');
+        join(builder, dependencies, "|||");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,174 @@
+package edu.umass.cs.iesl.lore;
+
+import edu.umass.cs.iesl.lore.format.CombineNonSplitFileInputFormat;
+import edu.umass.cs.iesl.lore.format.NonSplitFileInputFormat;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Extracts mention patterns with MapReduce, for corpora too large for one machine. A map-only job reads every .txt
+ * document under the input paths and writes the rows of the tsv output format of the local extractors.
+ * <p/>
+ * The annotator is static, so every task JVM loads the CoreNLP models once, and JVMs are reused across tasks
+ * unless <code>mapred.job.reuse.jvm.num.tasks</code> says otherwise. The annotator options are read from the job
+ * configuration under the same names as in the lore properties, e.g. <code>-D selective-parsing=true</code>.
+ * Small documents are combined into splits of up to <code>mapred.max.split.size</code> bytes (64MB unless set);
+ * <code>-D lore.combine-input=false</code> gives every document a map task of its own.
+ * <p/>
+ * Usage: HadoopMentionPatternExtractor [hadoop options] [-local] [entity|relation|both] [input] [output]
+ * where -local runs the job in this JVM with the local job runner on the local file system. The output of both
+ * mixes entity and relation rows, which PatternAggregator tells apart by their number of columns. Hadoop is a
+ * provided dependency, so run it with <code>hadoop jar</code>, also with -local.
+ *
+ * @author kedarb
+ * @since 02/26/12
+ */
+public class HadoopMentionPatternExtractor {
+    private static final Logger logger = Logger.getLogger(HadoopMentionPatternExtractor.class);
+
+    public static final String PATTERNS = "lore.patterns";
+    public static final String COMBINE_INPUT = "lore.combine-input";
+    static final long DEFAULT_MAX_SPLIT_SIZE = 64L << 20;
+
+    static final List<String> ANNOTATOR_OPTIONS = Arrays.asList(CoreNLPAnnotator.ANNOTATION_CACHE_DIR,
+            CoreNLPAnnotator.SELECTIVE_PARSING, CoreNLPAnnotator.MAX_PARSE_SENTENCE_LENGTH,
+            CoreNLPAnnotator.COREF_WINDOW_SENTENCES, CoreNLPAnnotator.PIPELINE_METRICS);
+
+    public enum Counters {
+        DOCUMENTS, FAILED_DOCUMENTS, ENTITY_PATTERNS, RELATION_PATTERNS
+    }
+
+    public static class PatternMapper extends Mapper<Text, Text, NullWritable, Text> {
+        // the models are loaded once per JVM and shared by the tasks it runs (one at a time)
+        private static CoreNLPAnnotator annotator = null;
+
+        private boolean entityPatterns;
+        private boolean relationPatterns;
+        private final Text row = new Text();
+
+        static synchronized CoreNLPAnnotator getAnnotator(Configuration conf) {
+            if (annotator == null) {
+                Properties options = new Properties();
+                for (String option : ANNOTATOR_OPTIONS) {
+                    String value = conf.get(option);
+                    if (value != null && value.length() > 0) options.setProperty(option, value);
+                }
+                annotator = new CoreNLPAnnotator(options);
+            }
+            return annotator;
+        }
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            super.setup(context);
+            String patterns = context.getConfiguration().get(PATTERNS, "both");
+            entityPatterns = !patterns.equals("relation");
+            relationPatterns = !patterns.equals("entity");
+            getAnnotator(context.getConfiguration());
+        }
+
+        @Override
+        protected void map(Text key, Text value, Context context) throws IOException, InterruptedException {
+            String filePath = key.toString();
+            context.setStatus(filePath);
+            List<EntityMentionPattern> entPatterns;
+            List<RelationMentionPattern> relPatterns;
+            try {
+                CoreNLPAnnotator annotator = getAnnotator(context.getConfiguration());
+                if (entityPatterns && relationPatterns) {
+                    CoreNLPAnnotator.MentionPatterns patterns = annotator.getMentionPatterns(filePath, value.toString());
+                    entPatterns = patterns.entityPatterns;
+                    relPatterns = patterns.relationPatterns;
+                } else if (entityPatterns) {
+                    entPatterns = annotator.getEntityPatterns(filePath, value.toString());
+                    relPatterns = null;
+                } else {
+                    entPatterns = null;
+                    relPatterns = annotator.getRelationPatterns(filePath, value.toString());
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error while processing file[" + filePath + "]", e);
+                context.getCounter(Counters.FAILED_DOCUMENTS).increment(1);
+                return;
+            }
+            context.getCounter(Counters.DOCUMENTS).increment(1);
+            if (entPatterns != null) {
+                for (EntityMentionPattern pattern : entPatterns) write(pattern, context);
+                context.getCounter(Counters.ENTITY_PATTERNS).increment(entPatterns.size());
+            }
+            if (relPatterns != null) {
+                for (RelationMentionPattern pattern : relPatterns) write(pattern, context);
+                context.getCounter(Counters.RELATION_PATTERNS).increment(relPatterns.size());
+            }
+        }
+
+        private void write(MentionPattern pattern, Context context) throws IOException, InterruptedException {
+            row.set(pattern.toTSV());
+            context.write(NullWritable.get(), row);
+        }
+    }
+
+    /**
+     * Runs jobs with the local job runner on the local file system.
+     */
+    public static void setLocal(Configuration conf) {
+        conf.set("mapred.job.tracker", "local");
+        conf.set("fs.default.name", "file:///");
+    }
+
+    public static Job newJob(Configuration conf, String patterns, String input, String output) throws IOException {
+        if (!patterns.equals("entity") && !patterns.equals("relation") && !patterns.equals("both"))
+            throw new IllegalArgumentException("Unknown patterns: " + patterns);
+        conf.set(PATTERNS, patterns);
+        if (conf.get("mapred.child.java.opts") == null) conf.set("mapred.child.java.opts", "-Xmx5G");
+        if (conf.get("mapred.job.reuse.jvm.num.tasks") == null) conf.setInt("mapred.job.reuse.jvm.num.tasks", -1);
+        if (conf.get("mapred.max.split.size") == null) conf.setLong("mapred.max.split.size", DEFAULT_MAX_SPLIT_SIZE);
+
+        Job job = new Job(conf, "mention-patterns[" + patterns + "]");
+        job.setJarByClass(HadoopMentionPatternExtractor.class);
+
+        job.setMapperClass(PatternMapper.class);
+        job.setInputFormatClass(conf.getBoolean(COMBINE_INPUT, true) ?
+                CombineNonSplitFileInputFormat.class : NonSplitFileInputFormat.class);
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(Text.class);
+        job.setOutputFormatClass(TextOutputFormat.class);
+        job.setNumReduceTasks(0);
+
+        FileInputFormat.setInputPaths(job, input);
+        FileOutputFormat.setOutputPath(job, new Path(output));
+        return job;
+    }
+
+    public static void main(String args[]) throws Exception {
+        Configuration conf = new Configuration();
+        String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+        int a = 0;
+        if (otherArgs.length > 0 && otherArgs[0].equals("-local")) {
+            setLocal(conf);
+            a++;
+        }
+        if (otherArgs.length - a != 3) {
+            System.err.println("Usage: HadoopMentionPatternExtractor [-local] <entity|relation|both> <in> <out>");
+            System.exit(2);
+        }
+
+        Job job = newJob(conf, otherArgs[a], otherArgs[a + 1], otherArgs[a + 2]);
+        logger.info("input=" + otherArgs[a + 1] + " output=" + otherArgs[a + 2]);
+        System.exit(job.waitForCompletion(true) ? 0 : 1);
+    }
+}
@@ -0,0 +1,122 @@
+package edu.umass.cs.iesl.lore;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values without boxing: two parallel arrays, linear probing and
+ * a load factor of at most 1/2. Key 0 marks an empty slot and cannot be stored.
+ *
+ * @author kedarb
+ * @since 01/15/12
+ */
+public class LongIntHashMap {
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    public LongIntHashMap() {
+        this(1024);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < 2 * expectedSize) capacity <<= 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    private static int hash(long key) {
+        // murmur3 finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    public int get(long key) {
+        return values[slot(key)];
+    }
+
+    /**
+     * Adds delta to the value of the key (0 if absent).
+     * @return the new value
+     */
+    public int adjust(long key, int delta) {
+        return values[insertSlot(key)] += delta;
+    }
+
+    /**
+     * Sets the value of the key.
+     * @return the previous value (0 if absent)
+     */
+    public int put(long key, int value) {
+        int i = insertSlot(key);
+        int previous = values[i];
+        values[i] = value;
+        return previous;
+    }
+
+    private int insertSlot(long key) {
+        if (key == 0) throw new IllegalArgumentException("key 0 is reserved");
+        int i = slot(key);
+        if (keys[i] == 0) {
+            if (2 * (size + 1) > keys.length) {
+                rehash(keys.length << 1);
+                i = slot(key);
+            }
+            keys[i] = key;
+            size++;
+        }
+        return i;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * Slot-based iteration: <code>for (int i = map.nextSlot(-1); i >= 0; i = map.nextSlot(i))</code> with
+     * {@link #keyAt} and {@link #valueAt}.
+     */
+    public int nextSlot(int slot) {
+        for (int i = slot + 1; i < keys.length; i++) {
+            if (keys[i] != 0) return i;
+        }
+        return -1;
+    }
+
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+}
@@ -0,0 +1,30 @@
+package edu.umass.cs.iesl.lore;
+
+import java.util.List;
+
+/**
+ * A pattern extracted from a document; {@link #toTSV()} gives the row written by the TSV outputs.
+ *
+ * @author kedarb
+ * @since 01/08/12
+ */
+public abstract class MentionPattern {
+    public final String filePath;
+
+    protected MentionPattern(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public abstract String toTSV();
+
+    public static String getEntityId(String phrase, String filePath, AnnotatedDocument.Mention mention) {
+        return phrase.replace(' ', '_') + "##" + CoreNLPUtils.getMentionUniqID(filePath, mention);
+    }
+
+    static void join(StringBuilder builder, List<DependencyStep> steps, String glue) {
+        for (int i = 0; i < steps.size(); i++) {
+            if (i > 0) builder.append(glue);
+            builder.append(steps.get(i));
+        }
+    }
+}
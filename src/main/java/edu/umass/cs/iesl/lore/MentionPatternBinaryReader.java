@@ -0,0 +1,159 @@
+package edu.umass.cs.iesl.lore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the mention patterns of a file written by {@link MentionPatternBinaryWriter}, one block at a time.
+ * <p/>
+ * Usage: MentionPatternBinaryReader [binary file or dir]... prints the patterns as the TSV rows the extractors
+ * write with the tsv output format. Directories are searched for {@link #EXTENSION} files.
+ *
+ * @author kedarb
+ * @since 01/08/12
+ */
+public class MentionPatternBinaryReader implements Iterator<MentionPattern> {
+    public static final String EXTENSION = ".lmp";
+
+    private final DataInputStream in;
+    private final List<MentionPattern> block = new ArrayList<MentionPattern>();
+    private int blockIndex = 0;
+    private boolean done = false;
+
+    public MentionPatternBinaryReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    public MentionPatternBinaryReader(InputStream inputStream) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(inputStream, 1 << 16));
+        if (in.readInt() != MentionPatternBinaryWriter.MAGIC)
+            throw new IOException("Not a mention pattern file");
+        int version = in.readInt();
+        if (version != MentionPatternBinaryWriter.FORMAT_VERSION)
+            throw new IOException("Unsupported mention pattern file version=" + version);
+    }
+
+    public boolean hasNext() {
+        while (!done && blockIndex == block.size()) {
+            try {
+                readBlock();
+            } catch (IOException ioe) {
+                throw new RuntimeException(ioe);
+            }
+        }
+        return !done;
+    }
+
+    public MentionPattern next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return block.get(blockIndex++);
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readBlock() throws IOException {
+        block.clear();
+        blockIndex = 0;
+        int numPatterns;
+        try {
+            numPatterns = BinaryUtils.readVarInt(in);
+        } catch (EOFException eofe) {
+            done = true;
+            return;
+        }
+        byte[] bytes = new byte[BinaryUtils.readVarInt(in)];
+        in.readFully(bytes);
+        DataInputStream blockIn = new DataInputStream(new ByteArrayInputStream(bytes));
+        String[] strings = BinaryUtils.readStringDictionary(blockIn);
+        for (int i = 0; i < numPatterns; i++) block.add(readPattern(blockIn, strings));
+    }
+
+    static MentionPattern readPattern(DataInputStream in, String[] strings) throws IOException {
+        int type = BinaryUtils.readVarInt(in);
+        String filePath = strings[BinaryUtils.readVarInt(in)];
+        switch (type) {
+            case MentionPatternBinaryWriter.ENTITY_PATTERN: {
+                String phrase = strings[BinaryUtils.readVarInt(in)];
+                AnnotatedDocument.Mention mention = readMention(in);
+                String ner = strings[BinaryUtils.readVarInt(in)];
+                return new EntityMentionPattern(filePath, phrase, mention, ner, readSteps(in, strings));
+            }
+            case MentionPatternBinaryWriter.RELATION_PATTERN: {
+                String srcPhrase = strings[BinaryUtils.readVarInt(in)];
+                AnnotatedDocument.Mention srcMention = readMention(in);
+                String srcNER = strings[BinaryUtils.readVarInt(in)];
+                int numEdgeWalks = BinaryUtils.readVarInt(in);
+                List<List<DependencyStep>> edgeWalks = new ArrayList<List<DependencyStep>>(numEdgeWalks);
+                for (int i = 0; i < numEdgeWalks; i++) edgeWalks.add(readSteps(in, strings));
+                String destPhrase = strings[BinaryUtils.readVarInt(in)];
+                AnnotatedDocument.Mention destMention = readMention(in);
+                String destNER = strings[BinaryUtils.readVarInt(in)];
+                return new RelationMentionPattern(filePath, srcPhrase, srcMention, srcNER, edgeWalks,
+                        destPhrase, destMention, destNER);
+            }
+            default:
+                throw new IOException("Unknown pattern type=" + type);
+        }
+    }
+
+    static AnnotatedDocument.Mention readMention(DataInputStream in) throws IOException {
+        int sentNum = BinaryUtils.readVarInt(in);
+        int startIndex = BinaryUtils.readVarInt(in);
+        int endIndex = BinaryUtils.readVarInt(in);
+        int headIndex = BinaryUtils.readVarInt(in);
+        int corefClusterID = BinaryUtils.readVarInt(in);
+        return new AnnotatedDocument.Mention(sentNum, startIndex, endIndex, headIndex, corefClusterID);
+    }
+
+    static List<DependencyStep> readSteps(DataInputStream in, String[] strings) throws IOException {
+        int numSteps = BinaryUtils.readVarInt(in);
+        List<DependencyStep> steps = new ArrayList<DependencyStep>(numSteps);
+        for (int i = 0; i < numSteps; i++) {
+            int edge = BinaryUtils.readVarInt(in);
+            String lemma = strings[BinaryUtils.readVarInt(in)];
+            steps.add(new DependencyStep((edge & 1) != 0, strings[edge >>> 1], lemma));
+        }
+        return steps;
+    }
+
+    static void toTSV(File file, PrintWriter writer) throws IOException {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            Arrays.sort(files);
+            for (File ifile : files) {
+                if (ifile.isDirectory() || ifile.getName().endsWith(EXTENSION)) toTSV(ifile, writer);
+            }
+        } else if (file.isFile()) {
+            MentionPatternBinaryReader reader = new MentionPatternBinaryReader(file);
+            try {
+                while (reader.hasNext()) writer.println(reader.next().toTSV());
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    public static void main(String args[]) throws IOException {
+        PrintWriter writer = new PrintWriter(System.out);
+        for (String filename : args) toTSV(new File(filename), writer);
+        writer.flush();
+    }
+}
@@ -0,0 +1,126 @@
+package edu.umass.cs.iesl.lore;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes mention patterns in a compact binary format instead of TSV rows. The file starts with {@link #MAGIC} and
+ * {@link #FORMAT_VERSION}, followed by blocks of up to {@link #BLOCK_SIZE} patterns:
+ * <pre>
+ * [#patterns] [#bytes] [dictionary] [pattern]...
+ * </pre>
+ * where every string (file paths, phrases, NER tags, relations and lemmas) is stored once per block in the
+ * dictionary and referred to by its id, and mentions are stored as their int offsets. Entity ids are not stored
+ * as they are derived from the phrase, file path and mention. Use {@link MentionPatternBinaryReader} to read the
+ * patterns back or convert them to TSV.
+ *
+ * @author kedarb
+ * @since 01/08/12
+ */
+public class MentionPatternBinaryWriter {
+    static final int MAGIC = 0x4c4d5054; // "LMPT"
+    static final int FORMAT_VERSION = 2;
+    static final int BLOCK_SIZE = 4096;
+
+    static final int ENTITY_PATTERN = 1;
+    static final int RELATION_PATTERN = 2;
+
+    private final DataOutputStream out;
+    private final BinaryUtils.StringDictionary dictionary = new BinaryUtils.StringDictionary();
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(1 << 16);
+    private final DataOutputStream block = new DataOutputStream(blockBytes);
+    private int numPatterns = 0;
+
+    public MentionPatternBinaryWriter(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    public MentionPatternBinaryWriter(OutputStream outputStream) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+    }
+
+    public void write(MentionPattern pattern) throws IOException {
+        if (pattern instanceof EntityMentionPattern) {
+            EntityMentionPattern entPattern = (EntityMentionPattern) pattern;
+            BinaryUtils.writeVarInt(block, ENTITY_PATTERN);
+            writeString(entPattern.filePath);
+            writeString(entPattern.phrase);
+            writeMention(entPattern.mention);
+            writeString(entPattern.ner);
+            writeSteps(entPattern.dependencies);
+        } else if (pattern instanceof RelationMentionPattern) {
+            RelationMentionPattern relPattern = (RelationMentionPattern) pattern;
+            BinaryUtils.writeVarInt(block, RELATION_PATTERN);
+            writeString(relPattern.filePath);
+            writeString(relPattern.srcPhrase);
+            writeMention(relPattern.srcMention);
+            writeString(relPattern.srcNER);
+            BinaryUtils.writeVarInt(block, relPattern.edgeWalks.size());
+            for (List<DependencyStep> edgeWalk : relPattern.edgeWalks) writeSteps(edgeWalk);
+            writeString(relPattern.destPhrase);
+            writeMention(relPattern.destMention);
+            writeString(relPattern.destNER);
+        } else {
+            throw new IllegalArgumentException("Unknown pattern type: " + pattern.getClass().getName());
+        }
+        if (++numPatterns == BLOCK_SIZE) writeBlock();
+    }
+
+    public void writeAll(List<? extends MentionPattern> patterns) throws IOException {
+        for (MentionPattern pattern : patterns) write(pattern);
+    }
+
+    private void writeString(String s) throws IOException {
+        BinaryUtils.writeVarInt(block, dictionary.id(s));
+    }
+
+    private void writeMention(AnnotatedDocument.Mention mention) throws IOException {
+        BinaryUtils.writeVarInt(block, mention.sentNum);
+        BinaryUtils.writeVarInt(block, mention.startIndex);
+        BinaryUtils.writeVarInt(block, mention.endIndex);
+        BinaryUtils.writeVarInt(block, mention.headIndex);
+        BinaryUtils.writeVarInt(block, mention.corefClusterID);
+    }
+
+    private void writeSteps(List<DependencyStep> steps) throws IOException {
+        BinaryUtils.writeVarInt(block, steps.size());
+        for (DependencyStep step : steps) {
+            BinaryUtils.writeVarInt(block, (dictionary.id(step.relation) << 1) | (step.toGovernor ? 1 : 0));
+            BinaryUtils.writeVarInt(block, dictionary.id(step.lemma));
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (numPatterns == 0) return;
+        ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+        dictionary.write(new DataOutputStream(dictionaryBytes));
+        BinaryUtils.writeVarInt(out, numPatterns);
+        BinaryUtils.writeVarInt(out, dictionaryBytes.size() + blockBytes.size());
+        dictionaryBytes.writeTo(out);
+        blockBytes.writeTo(out);
+        dictionary.clear();
+        blockBytes.reset();
+        numPatterns = 0;
+    }
+
+    /**
+     * Ends the current block (so that everything written so far is readable) and flushes the file.
+     */
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
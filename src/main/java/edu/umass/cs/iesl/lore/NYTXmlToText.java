@@ -3,12 +3,23 @@ package edu.umass.cs.iesl.lore;
 
 import com.nytlabs.corpus.NYTCorpusDocument;
 import com.nytlabs.corpus.NYTCorpusDocumentParser;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @author kedarb
@@ -44,7 +55,148 @@ public class NYTXmlToText {
         }
     }
 
-    public static void main(String args[]) throws IOException {
+    /**
+     * Per-thread conversion state: the XML parsers are reused across documents and every thread writes to its
+     * own output file, so threads never contend on a writer.
+     */
+    static class ArchiveConverter {
+        final DocumentBuilder docBuilder;
+        final NYTCorpusDocumentParser parser = new NYTCorpusDocumentParser();
+        final PrintWriter writer;
+        // articles converted and articles that could not be converted
+        int numConverted = 0;
+        int numFailed = 0;
+
+        ArchiveConverter(File outputFile) throws IOException, ParserConfigurationException {
+            DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
+            docBuilderFactory.setValidating(false);
+            // do not fetch the NITF DTD for every document
+            try {
+                docBuilderFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            } catch (ParserConfigurationException ignored) {
+            }
+            docBuilder = docBuilderFactory.newDocumentBuilder();
+            writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(outputFile), "UTF-8"), 1 << 16));
+        }
+
+        /**
+         * Streams the .tgz archive and appends one record per article (see {@link DocumentRecords}), with the
+         * document id being the entry path with .xml replaced by .txt. Articles that fail to convert are counted
+         * in {@link #numFailed} and skipped.
+         * @return the number of documents converted
+         */
+        int convert(File archive) throws IOException {
+            int numDocs = 0;
+            TarArchiveInputStream tarIn = new TarArchiveInputStream(new GZIPInputStream(
+                    new BufferedInputStream(new FileInputStream(archive), 1 << 16)));
+            try {
+                TarArchiveEntry entry;
+                byte[] buffer = new byte[1 << 16];
+                while ((entry = tarIn.getNextTarEntry()) != null) {
+                    if (!entry.isFile() || !entry.getName().endsWith(".xml")) continue;
+                    // read the entry fully: the XML parser closes the stream it is given
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.max(entry.getSize(), 0));
+                    int n;
+                    while ((n = tarIn.read(buffer)) != -1) bytes.write(buffer, 0, n);
+                    try {
+                        docBuilder.reset();
+                        Document doc = docBuilder.parse(new ByteArrayInputStream(bytes.toByteArray()));
+                        NYTCorpusDocument nytDoc = parser.parseNYTCorpusDocumentFromDOMDocument(new File(entry.getName()), doc);
+                        String docId = entry.getName().replaceAll("\\.xml$", ".txt");
+                        writer.println(DocumentRecords.format(docId, String.valueOf(nytDoc.getBody())));
+                        numDocs++;
+                        numConverted++;
+                    } catch (Exception e) {
+                        numFailed++;
+                        System.err.println("Error while converting " + archive.getAbsolutePath() + ":" +
+                                entry.getName() + ": " + e);
+                    }
+                }
+            } finally {
+                tarIn.close();
+            }
+            writer.flush();
+            return numDocs;
+        }
+    }
+
+    /**
+     * Converts .tgz archives of NYT articles in parallel without unpacking them. Every thread writes records to
+     * its own <code>part-N.ldr</code> file in the output directory (overwriting the file of an earlier run).
+     * Articles that fail to convert, and the rest of archives that cannot be read, are lost; their number is
+     * reported at the end.
+     */
+    public static void archives2text(List<File> archives, final File outputDir, int numThreads) throws InterruptedException {
+        outputDir.mkdirs();
+        final AtomicInteger numConverters = new AtomicInteger(0);
+        final List<ArchiveConverter> converters = Collections.synchronizedList(new ArrayList<ArchiveConverter>());
+        final ThreadLocal<ArchiveConverter> converter = new ThreadLocal<ArchiveConverter>() {
+            @Override
+            protected ArchiveConverter initialValue() {
+                File outputFile = new File(outputDir, "part-" + numConverters.getAndIncrement() + DocumentRecords.EXTENSION);
+                try {
+                    ArchiveConverter archiveConverter = new ArchiveConverter(outputFile);
+                    converters.add(archiveConverter);
+                    return archiveConverter;
+                } catch (Exception e) {
+                    throw new RuntimeException("Cannot create converter writing to " + outputFile.getAbsolutePath(), e);
+                }
+            }
+        };
+
+        final AtomicInteger numDocs = new AtomicInteger(0);
+        final AtomicInteger numFailedArchives = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        for (final File archive : archives) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        int archiveDocs = converter.get().convert(archive);
+                        System.out.println("Finished: " + archive.getAbsolutePath() + " #docs=" + archiveDocs +
+                                " total=" + numDocs.addAndGet(archiveDocs));
+                    } catch (IOException ioe) {
+                        numFailedArchives.incrementAndGet();
+                        System.err.println("Error while processing archive " + archive.getAbsolutePath() +
+                                ", its remaining articles are lost: " + ioe);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        int numConverted = 0, numFailed = 0;
+        for (ArchiveConverter archiveConverter : converters) {
+            archiveConverter.writer.close();
+            numConverted += archiveConverter.numConverted;
+            numFailed += archiveConverter.numFailed;
+        }
+        System.out.println("Converted " + numConverted + " articles of " + archives.size() + " archives, lost " +
+                numFailed + " articles that failed to convert and the rest of " + numFailedArchives.get() +
+                " unreadable archives");
+    }
+
+    static void collectArchives(File file, List<File> archives) {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            java.util.Arrays.sort(files);
+            for (File ifile : files) collectArchives(ifile, archives);
+        } else if (file.isFile() && file.getName().endsWith(".tgz")) {
+            archives.add(file);
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+        if (args.length > 0 && args[0].equals("-archives")) {
+            if (args.length < 4) {
+                System.err.println("Usage: NYTXmlToText -archives <outputDir> <numThreads> <tgz file or dir>...");
+                System.exit(2);
+            }
+            List<File> archives = new ArrayList<File>();
+            for (int i = 3; i < args.length; i++) collectArchives(new File(args[i]), archives);
+            archives2text(archives, new File(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
         for (String filename : args) {
             xml2text(new File(filename));
         }
@@ -0,0 +1,253 @@
+package edu.umass.cs.iesl.lore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds documents that are (near) duplicates of documents seen before, so that they are not annotated again.
+ * Documents are compared by the Jaccard similarity of their word shingles, estimated with MinHash signatures of
+ * {@link #getNumHashes()} values. The signatures are split into bands for locality sensitive hashing: only
+ * documents that agree on all values of some band are compared, and the number of bands is chosen so that
+ * documents around the threshold similarity become candidates. A candidate is a duplicate if its estimated
+ * similarity is at least the threshold.
+ * <p/>
+ * The index keeps the signature and id of every distinct document (4 bytes per hash), but not their text. It is
+ * safe to share between threads. {@link #add} looks a document up and indexes it in one step; callers that must
+ * only index documents they processed successfully use {@link #find} and {@link #insert} instead, at the price
+ * of near-duplicates that are looked up at the same time all being processed.
+ *
+ * @author kedarb
+ * @since 02/19/12
+ */
+public class NearDuplicateIndex {
+    public static final int DEFAULT_NUM_HASHES = 64;
+    public static final int DEFAULT_SHINGLE_SIZE = 5;
+
+    public static class Match {
+        public final String docId;
+        public final double similarity;
+
+        Match(String docId, double similarity) {
+            this.docId = docId;
+            this.similarity = similarity;
+        }
+    }
+
+    private final double threshold;
+    private final int numHashes;
+    private final int shingleSize;
+    private final int numBands;
+    private final int rowsPerBand;
+    private final long[] seeds;
+
+    // signatures and ids of the distinct documents
+    private final List<String> docIds = new ArrayList<String>();
+    private int[] signatures = new int[1024];
+    // band key -> last entry (doc * numBands + band) + 1 in the bucket; older entries are chained through next
+    private final LongIntHashMap buckets = new LongIntHashMap();
+    private int[] next = new int[1024];
+
+    private final AtomicLong numDocuments = new AtomicLong();
+    private final AtomicLong numWords = new AtomicLong();
+    private final AtomicLong numDuplicates = new AtomicLong();
+    private final AtomicLong duplicateWords = new AtomicLong();
+
+    public NearDuplicateIndex(double threshold) {
+        this(threshold, DEFAULT_NUM_HASHES, DEFAULT_SHINGLE_SIZE);
+    }
+
+    public NearDuplicateIndex(double threshold, int numHashes, int shingleSize) {
+        if (threshold <= 0 || threshold > 1) throw new IllegalArgumentException("threshold must be in (0, 1]");
+        this.threshold = threshold;
+        this.numHashes = numHashes;
+        this.shingleSize = shingleSize;
+        // the LSH threshold of b bands of r rows is about (1/b)^(1/r)
+        int bestBands = 1;
+        for (int b = 1; b <= numHashes; b++) {
+            if (numHashes % b != 0) continue;
+            if (Math.abs(lshThreshold(b, numHashes / b) - threshold) <
+                    Math.abs(lshThreshold(bestBands, numHashes / bestBands) - threshold)) bestBands = b;
+        }
+        numBands = bestBands;
+        rowsPerBand = numHashes / bestBands;
+        seeds = new long[numHashes];
+        Random random = new Random(0x4c4f5245L);
+        for (int i = 0; i < numHashes; i++) seeds[i] = random.nextLong();
+    }
+
+    static double lshThreshold(int bands, int rows) {
+        return Math.pow(1.0 / bands, 1.0 / rows);
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    public int getNumBands() {
+        return numBands;
+    }
+
+    private static long mix(long h) {
+        // murmur3 finalizer
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Adds the lowercased whitespace-separated words of the text to the list.
+     * @return the number of words
+     */
+    static int words(String text, List<String> words) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean space = i == text.length() || Character.isWhitespace(text.charAt(i));
+            if (space && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            } else if (!space && start < 0) {
+                start = i;
+            }
+        }
+        return words.size();
+    }
+
+    int[] signature(List<String> words) {
+        int[] signature = new int[numHashes];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int numShingles = Math.max(1, words.size() - shingleSize + 1);
+        for (int s = 0; s < numShingles; s++) {
+            long shingle = 0;
+            int end = Math.min(s + shingleSize, words.size());
+            for (int w = s; w < end; w++) shingle = 31 * shingle + words.get(w).hashCode();
+            shingle = mix(shingle);
+            for (int i = 0; i < numHashes; i++) {
+                int h = (int) (mix(shingle ^ seeds[i]) >>> 33);
+                if (h < signature[i]) signature[i] = h;
+            }
+        }
+        return signature;
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long key = band + 1;
+        for (int i = band * rowsPerBand; i < (band + 1) * rowsPerBand; i++) key = mix(31 * key + signature[i]);
+        return key == 0 ? 1 : key;
+    }
+
+    private double similarity(int[] signature, int doc) {
+        int offset = doc * numHashes;
+        int equal = 0;
+        for (int i = 0; i < numHashes; i++) {
+            if (signatures[offset + i] == signature[i]) equal++;
+        }
+        return (double) equal / numHashes;
+    }
+
+    /**
+     * The MinHash signature of a document and its band keys, computed without touching the index.
+     */
+    public class Signature {
+        final int[] values;
+        final long[] keys;
+        final int numWords;
+
+        Signature(String text) {
+            List<String> words = new ArrayList<String>();
+            numWords = words(text, words);
+            values = signature(words);
+            keys = new long[numBands];
+            for (int b = 0; b < numBands; b++) keys[b] = bandKey(values, b);
+        }
+    }
+
+    public Signature signature(String text) {
+        return new Signature(text);
+    }
+
+    /**
+     * Looks a document up without adding it, see {@link #insert}.
+     * @return the earlier document the signature is a near-duplicate of, or null if it is not a duplicate
+     */
+    public Match find(Signature signature) {
+        numDocuments.incrementAndGet();
+        numWords.addAndGet(signature.numWords);
+        synchronized (this) {
+            for (int b = 0; b < numBands; b++) {
+                for (int entry = buckets.get(signature.keys[b]) - 1; entry >= 0; entry = next[entry] - 1) {
+                    int doc = entry / numBands;
+                    double similarity = similarity(signature.values, doc);
+                    if (similarity >= threshold) {
+                        numDuplicates.incrementAndGet();
+                        duplicateWords.addAndGet(signature.numWords);
+                        return new Match(docIds.get(doc), similarity);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Adds a document that {@link #find} found no duplicate of, so that later documents are compared to it.
+     */
+    public synchronized void insert(String docId, Signature signature) {
+        int doc = docIds.size();
+        docIds.add(docId);
+        if ((doc + 1) * numHashes > signatures.length)
+            signatures = Arrays.copyOf(signatures, Math.max(2 * signatures.length, (doc + 1) * numHashes));
+        System.arraycopy(signature.values, 0, signatures, doc * numHashes, numHashes);
+        if ((doc + 1) * numBands > next.length)
+            next = Arrays.copyOf(next, Math.max(2 * next.length, (doc + 1) * numBands));
+        for (int b = 0; b < numBands; b++) {
+            int entry = doc * numBands + b;
+            next[entry] = buckets.put(signature.keys[b], entry + 1);
+        }
+    }
+
+    /**
+     * Looks the document up and adds it to the index unless it is a duplicate.
+     * @return the earlier document the text is a near-duplicate of, or null if it is not a duplicate
+     */
+    public Match add(String docId, String text) {
+        Signature signature = signature(text);
+        synchronized (this) {
+            Match match = find(signature);
+            if (match == null) insert(docId, signature);
+            return match;
+        }
+    }
+
+    public long getNumDocuments() {
+        return numDocuments.get();
+    }
+
+    public long getNumWords() {
+        return numWords.get();
+    }
+
+    public long getNumDuplicates() {
+        return numDuplicates.get();
+    }
+
+    public long getDuplicateWords() {
+        return duplicateWords.get();
+    }
+
+    @Override
+    public String toString() {
+        return "near duplicates: #docs=" + getNumDocuments() + " #duplicates=" + getNumDuplicates() +
+                " #words=" + getNumWords() + " #duplicateWords=" + getDuplicateWords() + " threshold=" + threshold +
+                " #hashes=" + numHashes + " #bands=" + numBands;
+    }
+}
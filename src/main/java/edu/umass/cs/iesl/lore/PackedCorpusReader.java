@@ -0,0 +1,159 @@
+package edu.umass.cs.iesl.lore;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Random access to a corpus written by {@link PackedCorpusWriter}. The index is loaded into memory and the data
+ * file is memory-mapped, in segments of up to 2GB that never split a document, so a document is a slice of the
+ * mapping rather than a file to open. The reader is safe to share between threads.
+ * <p/>
+ * Usage: PackedCorpusReader [.lpc file] [docId]... prints the number of documents, or the given documents.
+ *
+ * @author kedarb
+ * @since 02/12/12
+ */
+public class PackedCorpusReader {
+    public static final String EXTENSION = ".lpc";
+    public static final String INDEX_EXTENSION = ".idx";
+
+    static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File dataFile;
+    private final String[] docIds;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] segmentOf;
+    private final long[] segmentStarts;
+    private final MappedByteBuffer[] segments;
+    private Map<String, Integer> docIndexes = null;
+
+    public static File indexFile(File dataFile) {
+        return new File(dataFile.getPath() + INDEX_EXTENSION);
+    }
+
+    public PackedCorpusReader(File dataFile) throws IOException {
+        this.dataFile = dataFile;
+        List<String> idList = new ArrayList<String>();
+        long[] offsetList = new long[1024];
+        int[] lengthList = new int[1024];
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(indexFile(dataFile)), 1 << 16));
+        try {
+            if (in.readInt() != PackedCorpusWriter.MAGIC) throw new IOException("Not a packed corpus index");
+            int version = in.readInt();
+            if (version != PackedCorpusWriter.FORMAT_VERSION)
+                throw new IOException("Unsupported packed corpus version=" + version);
+            while (in.readByte() != 0) {
+                int i = idList.size();
+                if (i == offsetList.length) {
+                    offsetList = Arrays.copyOf(offsetList, 2 * i);
+                    lengthList = Arrays.copyOf(lengthList, 2 * i);
+                }
+                idList.add(in.readUTF());
+                offsetList[i] = in.readLong();
+                lengthList[i] = in.readInt();
+            }
+        } finally {
+            in.close();
+        }
+        docIds = idList.toArray(new String[idList.size()]);
+        offsets = Arrays.copyOf(offsetList, docIds.length);
+        lengths = Arrays.copyOf(lengthList, docIds.length);
+
+        // cut the data file into segments that can be mapped at once
+        segmentOf = new int[docIds.length];
+        List<Long> starts = new ArrayList<Long>();
+        List<Long> ends = new ArrayList<Long>();
+        for (int i = 0; i < docIds.length; i++) {
+            long end = offsets[i] + lengths[i];
+            int s = starts.size() - 1;
+            if (s < 0 || end - starts.get(s) > MAX_SEGMENT_BYTES) {
+                starts.add(offsets[i]);
+                ends.add(end);
+                s++;
+            } else if (end > ends.get(s)) {
+                ends.set(s, end);
+            }
+            segmentOf[i] = s;
+        }
+        segmentStarts = new long[starts.size()];
+        segments = new MappedByteBuffer[starts.size()];
+        RandomAccessFile file = new RandomAccessFile(dataFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (!ends.isEmpty() && channel.size() < ends.get(ends.size() - 1))
+                throw new IOException("Packed corpus data file is truncated: " + dataFile.getPath());
+            for (int s = 0; s < segments.length; s++) {
+                segmentStarts[s] = starts.get(s);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, starts.get(s), ends.get(s) - starts.get(s));
+            }
+        } finally {
+            // mappings stay valid after the channel is closed
+            file.close();
+        }
+    }
+
+    public File getDataFile() {
+        return dataFile;
+    }
+
+    public int size() {
+        return docIds.length;
+    }
+
+    public String getDocId(int i) {
+        return docIds[i];
+    }
+
+    /**
+     * @return the UTF-8 bytes of document i as a read-only view of the mapping (no copy)
+     */
+    public ByteBuffer getBytes(int i) {
+        ByteBuffer bytes = segments[segmentOf[i]].duplicate();
+        int position = (int) (offsets[i] - segmentStarts[segmentOf[i]]);
+        bytes.limit(position + lengths[i]);
+        bytes.position(position);
+        return bytes.slice().asReadOnlyBuffer();
+    }
+
+    public String getText(int i) {
+        return UTF8.decode(getBytes(i)).toString();
+    }
+
+    /**
+     * @return the index of the document with the id, or -1 if there is none
+     */
+    public synchronized int indexOf(String docId) {
+        if (docIndexes == null) {
+            docIndexes = new HashMap<String, Integer>(docIds.length * 2);
+            for (int i = 0; i < docIds.length; i++) docIndexes.put(docIds[i], i);
+        }
+        Integer i = docIndexes.get(docId);
+        return i == null ? -1 : i;
+    }
+
+    public static void main(String args[]) throws IOException {
+        PackedCorpusReader reader = new PackedCorpusReader(new File(args[0]));
+        if (args.length == 1) System.out.println(args[0] + ": #documents=" + reader.size());
+        for (int a = 1; a < args.length; a++) {
+            int i = reader.indexOf(args[a]);
+            if (i < 0) System.err.println("No document " + args[a]);
+            else System.out.println(reader.getText(i));
+        }
+    }
+}
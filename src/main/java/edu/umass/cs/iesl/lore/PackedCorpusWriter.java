@@ -0,0 +1,147 @@
+package edu.umass.cs.iesl.lore;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Packs many small documents into one data file and an index, so that a corpus is read with one open file
+ * instead of one per document. The data file is the UTF-8 text of the documents back to back; the index file
+ * (the data file name plus {@link PackedCorpusReader#INDEX_EXTENSION}) starts with {@link #MAGIC} and
+ * {@link #FORMAT_VERSION}, followed by an entry per document and an end marker:
+ * <pre>
+ * 1 [docId] [offset] [#bytes] ... 0
+ * </pre>
+ * The text is stored the way the extractors read a document file: lines joined by <code>\n</code>.
+ * <p/>
+ * Usage: PackedCorpusWriter [output .lpc file] [input]... where an input is either a directory of .txt
+ * documents (id: the absolute path of the file) and .ldr files, or a .ldr file of {@link DocumentRecords}.
+ *
+ * @author kedarb
+ * @since 02/12/12
+ */
+public class PackedCorpusWriter {
+    static final int MAGIC = 0x4c504349; // "LPCI"
+    static final int FORMAT_VERSION = 1;
+
+    private final DataOutputStream data;
+    private final DataOutputStream index;
+    private long offset = 0;
+    private int numDocuments = 0;
+
+    public PackedCorpusWriter(File dataFile) throws IOException {
+        data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile), 1 << 16));
+        index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                PackedCorpusReader.indexFile(dataFile)), 1 << 16));
+        index.writeInt(MAGIC);
+        index.writeInt(FORMAT_VERSION);
+    }
+
+    public void add(String docId, String text) throws IOException {
+        byte[] bytes = text.getBytes("UTF-8");
+        data.write(bytes);
+        index.writeByte(1);
+        index.writeUTF(docId);
+        index.writeLong(offset);
+        index.writeInt(bytes.length);
+        offset += bytes.length;
+        numDocuments++;
+    }
+
+    public int getNumDocuments() {
+        return numDocuments;
+    }
+
+    public void close() throws IOException {
+        index.writeByte(0);
+        index.close();
+        data.close();
+    }
+
+    /**
+     * Adds the .txt files and the records of the {@link DocumentRecords} files under the directory, in path order.
+     */
+    public void addDirectory(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) addDirectory(file);
+            else if (file.getName().endsWith(".txt")) add(file.getAbsolutePath(), readText(file));
+            else if (file.getName().endsWith(DocumentRecords.EXTENSION)) addRecords(file);
+        }
+    }
+
+    /**
+     * Adds every record of a {@link DocumentRecords} file.
+     */
+    public void addRecords(File recordsFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(recordsFile), "UTF-8"));
+        try {
+            String record;
+            while ((record = reader.readLine()) != null) {
+                if (record.length() == 0) continue;
+                add(DocumentRecords.getDocId(record), normalize(DocumentRecords.getText(record)));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the text of a document file as the extractors read it: ISO-8859-1, lines joined by \n
+     */
+    public static String readText(File file) throws IOException {
+        return joinLines(new InputStreamReader(new FileInputStream(file), "ISO-8859-1"));
+    }
+
+    /**
+     * @return the text with its lines joined by \n, as if it was written to a document file and read back
+     */
+    public static String normalize(String text) throws IOException {
+        return joinLines(new StringReader(text));
+    }
+
+    private static String joinLines(Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in, 1 << 16);
+        try {
+            StringBuilder builder = new StringBuilder();
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                if (!first) builder.append('\n');
+                builder.append(line);
+                first = false;
+            }
+            return builder.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    public static void main(String args[]) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PackedCorpusWriter <output .lpc file> <input dir or records file>...");
+            System.exit(1);
+        }
+        PackedCorpusWriter writer = new PackedCorpusWriter(new File(args[0]));
+        try {
+            for (int i = 1; i < args.length; i++) {
+                File input = new File(args[i]);
+                if (input.isDirectory()) writer.addDirectory(input);
+                else writer.addRecords(input);
+                System.out.println("Packed " + input.getPath() + ": #documents=" + writer.getNumDocuments());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package edu.umass.cs.iesl.lore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts (key, value) string pairs, e.g. (entity type pair, dependency path). Both strings are interned to int
+ * ids and a pair is counted under its packed long in a {@link LongIntHashMap}, so a pair costs 12-24 bytes
+ * besides its strings. Once the map holds <code>maxEntries</code> pairs, they are written to disk as a run
+ * sorted by (key, value) and the map and dictionary are cleared. {@link #writeCounts} merges the runs (in
+ * several passes if there are more than {@link #MAX_OPEN_RUNS}) and sums the counts of equal pairs.
+ * <p/>
+ * Not thread-safe: every worker counts into its own counter and the counters are combined with {@link #merge}.
+ *
+ * @author kedarb
+ * @since 01/15/12
+ */
+public class PatternCounter {
+    static final int MAX_OPEN_RUNS = 64;
+
+    private final String name;
+    private final File runDir;
+    private final int maxEntries;
+    private final BinaryUtils.StringDictionary dictionary = new BinaryUtils.StringDictionary();
+    private final LongIntHashMap counts = new LongIntHashMap();
+    private final List<File> runs = new ArrayList<File>();
+    private long total = 0;
+
+    /**
+     * @param name       prefix of the run files
+     * @param runDir     where runs are spilled
+     * @param maxEntries number of distinct pairs kept in memory before spilling
+     */
+    public PatternCounter(String name, File runDir, int maxEntries) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries=" + maxEntries + " should be positive");
+        this.name = name;
+        this.runDir = runDir;
+        this.maxEntries = maxEntries;
+    }
+
+    public void add(String key, String value) {
+        add(key, value, 1);
+    }
+
+    public void add(String key, String value, int count) {
+        // ids start at 1, so a packed pair is never 0
+        long pair = ((long) dictionary.id(String.valueOf(key)) << 32) | dictionary.id(String.valueOf(value));
+        counts.adjust(pair, count);
+        total += count;
+        if (counts.size() >= maxEntries) spill();
+    }
+
+    /**
+     * Moves the counts (in memory and spilled) of the other counter into this one.
+     */
+    public void merge(PatternCounter other) {
+        long spilled = other.total;
+        for (int i = other.counts.nextSlot(-1); i >= 0; i = other.counts.nextSlot(i)) {
+            long pair = other.counts.keyAt(i);
+            add(other.dictionary.get((int) (pair >>> 32)), other.dictionary.get((int) pair), other.counts.valueAt(i));
+            spilled -= other.counts.valueAt(i);
+        }
+        total += spilled;
+        runs.addAll(other.runs);
+        other.runs.clear();
+        other.clearMemory();
+        other.total = 0;
+    }
+
+    /**
+     * @return the number of pairs counted so far (with multiplicity)
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public int getNumRuns() {
+        return runs.size();
+    }
+
+    private void clearMemory() {
+        counts.clear();
+        dictionary.clear();
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        final String key;
+        final String value;
+        final long count;
+
+        Entry(String key, String value, long count) {
+            this.key = key;
+            this.value = value;
+            this.count = count;
+        }
+
+        public int compareTo(Entry that) {
+            int cmp = key.compareTo(that.key);
+            return cmp != 0 ? cmp : value.compareTo(that.value);
+        }
+    }
+
+    private Entry[] sortedEntries() {
+        Entry[] entries = new Entry[counts.size()];
+        int n = 0;
+        for (int i = counts.nextSlot(-1); i >= 0; i = counts.nextSlot(i)) {
+            long pair = counts.keyAt(i);
+            entries[n++] = new Entry(dictionary.get((int) (pair >>> 32)), dictionary.get((int) pair), counts.valueAt(i));
+        }
+        Arrays.sort(entries);
+        return entries;
+    }
+
+    /**
+     * Writes the in-memory counts to a new sorted run and clears them.
+     */
+    public void spill() {
+        if (counts.size() == 0) return;
+        try {
+            RunWriter writer = new RunWriter(newRunFile());
+            try {
+                for (Entry entry : sortedEntries()) writer.write(entry);
+            } finally {
+                writer.close();
+            }
+            runs.add(writer.file);
+        } catch (IOException ioe) {
+            throw new RuntimeException("Cannot spill " + name + " counts to " + runDir.getAbsolutePath(), ioe);
+        }
+        clearMemory();
+    }
+
+    private File newRunFile() throws IOException {
+        runDir.mkdirs();
+        return File.createTempFile(name + "-run-", ".run", runDir);
+    }
+
+    /**
+     * Writes <code>[key] TAB [value] TAB [count]</code> rows sorted by (key, value) for all pairs counted at least
+     * minCount times, and deletes the runs.
+     */
+    public void writeCounts(File outputFile, long minCount) throws IOException {
+        outputFile.getAbsoluteFile().getParentFile().mkdirs();
+        TSVWriter writer = new TSVWriter(outputFile, minCount);
+        try {
+            if (runs.isEmpty()) {
+                for (Entry entry : sortedEntries()) writer.write(entry);
+                clearMemory();
+            } else {
+                spill();
+                while (runs.size() > MAX_OPEN_RUNS) {
+                    List<File> group = new ArrayList<File>(runs.subList(0, MAX_OPEN_RUNS));
+                    runs.subList(0, MAX_OPEN_RUNS).clear();
+                    RunWriter runWriter = new RunWriter(newRunFile());
+                    try {
+                        mergeRuns(group, runWriter);
+                    } finally {
+                        runWriter.close();
+                    }
+                    runs.add(runWriter.file);
+                }
+                mergeRuns(runs, writer);
+                runs.clear();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static abstract class EntryWriter {
+        abstract void write(Entry entry) throws IOException;
+
+        abstract void close() throws IOException;
+    }
+
+    private static class RunWriter extends EntryWriter {
+        final File file;
+        final DataOutputStream out;
+
+        RunWriter(File file) throws IOException {
+            this.file = file;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        }
+
+        void write(Entry entry) throws IOException {
+            BinaryUtils.writeString(out, entry.key);
+            BinaryUtils.writeString(out, entry.value);
+            out.writeLong(entry.count);
+        }
+
+        void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static class TSVWriter extends EntryWriter {
+        final PrintWriter out;
+        final long minCount;
+
+        TSVWriter(File file, long minCount) throws IOException {
+            out = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file), 1 << 16), "UTF-8"));
+            this.minCount = minCount;
+        }
+
+        void write(Entry entry) {
+            if (entry.count >= minCount) out.println(entry.key + "\t" + entry.value + "\t" + entry.count);
+        }
+
+        void close() throws IOException {
+            out.close();
+            if (out.checkError()) throw new IOException("Error while writing counts");
+        }
+    }
+
+    private static class RunReader implements Comparable<RunReader> {
+        final File file;
+        final DataInputStream in;
+        Entry entry;
+
+        RunReader(File file) throws IOException {
+            this.file = file;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                String key = BinaryUtils.readString(in);
+                entry = new Entry(key, BinaryUtils.readString(in), in.readLong());
+                return true;
+            } catch (EOFException eofe) {
+                entry = null;
+                return false;
+            }
+        }
+
+        public int compareTo(RunReader that) {
+            return entry.compareTo(that.entry);
+        }
+    }
+
+    /**
+     * k-way merge of sorted runs, summing the counts of equal pairs. The runs are deleted afterwards.
+     */
+    private static void mergeRuns(List<File> runFiles, EntryWriter writer) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(runFiles.size());
+        List<RunReader> readers = new ArrayList<RunReader>(runFiles.size());
+        try {
+            for (File runFile : runFiles) {
+                RunReader reader = new RunReader(runFile);
+                readers.add(reader);
+                if (reader.advance()) queue.add(reader);
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                Entry entry = reader.entry;
+                long count = entry.count;
+                if (reader.advance()) queue.add(reader);
+                while (!queue.isEmpty() && queue.peek().entry.compareTo(entry) == 0) {
+                    RunReader other = queue.poll();
+                    count += other.entry.count;
+                    if (other.advance()) queue.add(other);
+                }
+                writer.write(count == entry.count ? entry : new Entry(entry.key, entry.value, count));
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+                reader.file.delete();
+            }
+        }
+    }
+}
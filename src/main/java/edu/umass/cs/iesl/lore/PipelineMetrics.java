@@ -0,0 +1,298 @@
+package edu.umass.cs.iesl.lore;
+
+import org.apache.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide timings of the extraction pipeline: latency per stage (every CoreNLP annotator, pattern
+ * extraction, reading input), per-document latency histograms by document length, the slowest documents and
+ * throughput and queue depth per worker. Registered with JMX as {@link #OBJECT_NAME} when first requested,
+ * which only happens with pipeline-metrics on; ParallelProcessor then logs {@link #getSummary()} periodically.
+ *
+ * @author kedarb
+ * @since 01/29/12
+ */
+public class PipelineMetrics implements PipelineMetricsMBean {
+    private static final Logger logger = Logger.getLogger(PipelineMetrics.class);
+
+    public static final String OBJECT_NAME = "edu.umass.cs.iesl.lore:type=PipelineMetrics";
+
+    // upper bounds (exclusive) of the document length buckets in tokens; the last bucket is unbounded
+    static final int[] LENGTH_BUCKETS = {100, 300, 1000, 3000};
+    // latency bucket 0 is below 1 ms, bucket i covers [2^(i-1), 2^i) ms and the last one everything above
+    static final int NUM_LATENCY_BUCKETS = 20;
+    static final int NUM_SLOWEST_DOCUMENTS = 10;
+
+    private static PipelineMetrics instance = null;
+
+    public static synchronized PipelineMetrics getInstance() {
+        if (instance == null) {
+            instance = new PipelineMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+            } catch (JMException jme) {
+                logger.warn("Cannot register " + OBJECT_NAME + ": " + jme.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    public static class StageStats {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+        }
+
+        public double getMeanMillis() {
+            long n = count.get();
+            return n == 0 ? 0.0 : totalNanos.get() / 1e6 / n;
+        }
+    }
+
+    public static class WorkerStats {
+        final String name;
+        final long startNanos = System.nanoTime();
+        final AtomicLong items = new AtomicLong();
+        // -1 for workers without a queue
+        volatile int queueDepth = -1;
+
+        WorkerStats(String name) {
+            this.name = name;
+        }
+
+        public void itemDone() {
+            items.incrementAndGet();
+        }
+
+        /**
+         * @param queueDepth number of work items waiting for the worker
+         */
+        public void itemDone(int queueDepth) {
+            items.incrementAndGet();
+            this.queueDepth = queueDepth;
+        }
+
+        public double getItemsPerSecond() {
+            return items.get() / Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return name + ": #items=" + items.get() + " items/sec=" + String.format("%.2f", getItemsPerSecond()) +
+                    (queueDepth >= 0 ? " queueDepth=" + queueDepth : "");
+        }
+    }
+
+    static class SlowDocument implements Comparable<SlowDocument> {
+        final String filePath;
+        final int numTokens;
+        final long nanos;
+
+        SlowDocument(String filePath, int numTokens, long nanos) {
+            this.filePath = filePath;
+            this.numTokens = numTokens;
+            this.nanos = nanos;
+        }
+
+        public int compareTo(SlowDocument that) {
+            return nanos < that.nanos ? -1 : (nanos == that.nanos ? 0 : 1);
+        }
+
+        @Override
+        public String toString() {
+            return filePath + " #tokens=" + numTokens + " millis=" + nanos / 1000000;
+        }
+    }
+
+    private volatile long startNanos = System.nanoTime();
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong documentNanos = new AtomicLong();
+    private final LinkedHashMap<String, StageStats> stages = new LinkedHashMap<String, StageStats>();
+    private final LinkedHashMap<String, WorkerStats> workers = new LinkedHashMap<String, WorkerStats>();
+    private final AtomicLongArray[] histograms = new AtomicLongArray[LENGTH_BUCKETS.length + 1];
+    // min-heap: the fastest of the slowest documents is replaced first
+    private final PriorityQueue<SlowDocument> slowest = new PriorityQueue<SlowDocument>();
+
+    PipelineMetrics() {
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new AtomicLongArray(NUM_LATENCY_BUCKETS);
+    }
+
+    StageStats stage(String name) {
+        synchronized (stages) {
+            StageStats stats = stages.get(name);
+            if (stats == null) stages.put(name, stats = new StageStats());
+            return stats;
+        }
+    }
+
+    public void recordStage(String name, long nanos) {
+        stage(name).record(nanos);
+    }
+
+    /**
+     * Registers the stats of a worker, replacing earlier stats of a worker with the same name.
+     */
+    public WorkerStats worker(String name) {
+        WorkerStats stats = new WorkerStats(name);
+        synchronized (workers) {
+            workers.remove(name);
+            workers.put(name, stats);
+        }
+        return stats;
+    }
+
+    static int lengthBucket(int numTokens) {
+        int b = 0;
+        while (b < LENGTH_BUCKETS.length && numTokens >= LENGTH_BUCKETS[b]) b++;
+        return b;
+    }
+
+    static int latencyBucket(long nanos) {
+        long millis = nanos / 1000000;
+        int b = 0;
+        while (millis > 0 && b < NUM_LATENCY_BUCKETS - 1) {
+            millis >>= 1;
+            b++;
+        }
+        return b;
+    }
+
+    /**
+     * Records the latency of annotating a document and extracting its patterns.
+     */
+    public void recordDocument(String filePath, int numTokens, long nanos) {
+        documents.incrementAndGet();
+        documentNanos.addAndGet(nanos);
+        histograms[lengthBucket(numTokens)].incrementAndGet(latencyBucket(nanos));
+        synchronized (slowest) {
+            if (slowest.size() < NUM_SLOWEST_DOCUMENTS) {
+                slowest.add(new SlowDocument(filePath, numTokens, nanos));
+            } else if (slowest.peek().nanos < nanos) {
+                slowest.poll();
+                slowest.add(new SlowDocument(filePath, numTokens, nanos));
+            }
+        }
+    }
+
+    public long getDocuments() {
+        return documents.get();
+    }
+
+    public double getDocumentsPerSecond() {
+        return documents.get() / Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    public double getMeanDocumentMillis() {
+        long n = documents.get();
+        return n == 0 ? 0.0 : documentNanos.get() / 1e6 / n;
+    }
+
+    public String[] getStageLatencies() {
+        List<String> lines = new ArrayList<String>();
+        synchronized (stages) {
+            for (String name : stages.keySet()) {
+                StageStats stats = stages.get(name);
+                lines.add(name + ": #calls=" + stats.count.get() + " meanMillis=" +
+                        String.format("%.2f", stats.getMeanMillis()) + " maxMillis=" + stats.maxNanos.get() / 1000000 +
+                        " totalSecs=" + stats.totalNanos.get() / 1000000000);
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    static String lengthBucketName(int b) {
+        String lower = b == 0 ? "0" : String.valueOf(LENGTH_BUCKETS[b - 1]);
+        return "#tokens=[" + lower + "," + (b < LENGTH_BUCKETS.length ? LENGTH_BUCKETS[b] + ")" : "inf)");
+    }
+
+    static String latencyBucketName(int b) {
+        if (b == 0) return "<1ms";
+        return (b == NUM_LATENCY_BUCKETS - 1 ? ">=" : "<") + (1L << (b == NUM_LATENCY_BUCKETS - 1 ? b - 1 : b)) + "ms";
+    }
+
+    public String[] getLatencyHistograms() {
+        List<String> lines = new ArrayList<String>();
+        for (int b = 0; b < histograms.length; b++) {
+            StringBuilder builder = new StringBuilder(lengthBucketName(b)).append(':');
+            long total = 0;
+            for (int l = 0; l < NUM_LATENCY_BUCKETS; l++) {
+                long count = histograms[b].get(l);
+                if (count > 0) builder.append(' ').append(latencyBucketName(l)).append('=').append(count);
+                total += count;
+            }
+            if (total > 0) lines.add(builder.toString());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    public String[] getSlowestDocuments() {
+        SlowDocument[] docs;
+        synchronized (slowest) {
+            docs = slowest.toArray(new SlowDocument[slowest.size()]);
+        }
+        Arrays.sort(docs);
+        String[] lines = new String[docs.length];
+        for (int i = 0; i < docs.length; i++) lines[i] = docs[docs.length - 1 - i].toString();
+        return lines;
+    }
+
+    public String[] getWorkers() {
+        List<String> lines = new ArrayList<String>();
+        synchronized (workers) {
+            for (WorkerStats stats : workers.values()) lines.add(stats.toString());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    public String getSummary() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("pipeline metrics: #docs=").append(getDocuments())
+                .append(" docs/sec=").append(String.format("%.2f", getDocumentsPerSecond()))
+                .append(" meanMillis/doc=").append(String.format("%.1f", getMeanDocumentMillis()));
+        appendSection(builder, "workers", getWorkers());
+        appendSection(builder, "stages", getStageLatencies());
+        appendSection(builder, "latency by length", getLatencyHistograms());
+        appendSection(builder, "slowest documents", getSlowestDocuments());
+        return builder.toString();
+    }
+
+    private static void appendSection(StringBuilder builder, String title, String[] lines) {
+        if (lines.length == 0) return;
+        builder.append("\n  ").append(title).append(':');
+        for (String line : lines) builder.append("\n    ").append(line);
+    }
+
+    public void reset() {
+        startNanos = System.nanoTime();
+        documents.set(0);
+        documentNanos.set(0);
+        synchronized (stages) {
+            stages.clear();
+        }
+        synchronized (workers) {
+            workers.clear();
+        }
+        for (AtomicLongArray histogram : histograms) {
+            for (int l = 0; l < NUM_LATENCY_BUCKETS; l++) histogram.set(l, 0);
+        }
+        synchronized (slowest) {
+            slowest.clear();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package edu.umass.cs.iesl.lore;
+
+/**
+ * JMX view of {@link PipelineMetrics}.
+ *
+ * @author kedarb
+ * @since 01/29/12
+ */
+public interface PipelineMetricsMBean {
+    long getDocuments();
+
+    double getDocumentsPerSecond();
+
+    double getMeanDocumentMillis();
+
+    String[] getStageLatencies();
+
+    String[] getLatencyHistograms();
+
+    String[] getSlowestDocuments();
+
+    String[] getWorkers();
+
+    String getSummary();
+
+    void reset();
+}
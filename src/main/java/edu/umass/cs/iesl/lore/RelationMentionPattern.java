@@ -0,0 +1,54 @@
+package edu.umass.cs.iesl.lore;
+
+import java.util.List;
+
+/**
+ * Schema: [filePath] [srcEntityPhrase] [srcEntityId] [srcNER] [srcDestEdgeWalks] [destEntityPhrase] [destEntityId] [destNER]
+ *
+ * @author kedarb
+ * @since 01/08/12
+ */
+public class RelationMentionPattern extends MentionPattern {
+    public final String srcPhrase;
+    public final AnnotatedDocument.Mention srcMention;
+    public final String srcNER;
+    // edge walks between mentions of the source and destination entities
+    public final List<List<DependencyStep>> edgeWalks;
+    public final String destPhrase;
+    public final AnnotatedDocument.Mention destMention;
+    public final String destNER;
+
+    public RelationMentionPattern(String filePath, String srcPhrase, AnnotatedDocument.Mention srcMention, String srcNER,
+                                  List<List<DependencyStep>> edgeWalks,
+                                  String destPhrase, AnnotatedDocument.Mention destMention, String destNER) {
+        super(filePath);
+        this.srcPhrase = srcPhrase;
+        this.srcMention = srcMention;
+        this.srcNER = srcNER;
+        this.edgeWalks = edgeWalks;
+        this.destPhrase = destPhrase;
+        this.destMention = destMention;
+        this.destNER = destNER;
+    }
+
+    public String getSrcEntityId() {
+        return getEntityId(srcPhrase, filePath, srcMention);
+    }
+
+    public String getDestEntityId() {
+        return getEntityId(destPhrase, filePath, destMention);
+    }
+
+    @Override
+    public String toTSV() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(filePath).append('\t').append(srcPhrase).append('\t').append(getSrcEntityId()).append('\t')
+                .append(srcNER).append('\t');
+        for (int i = 0; i < edgeWalks.size(); i++) {
+            if (i > 0) builder.append("|||");
+            join(builder, edgeWalks.get(i), "");
+        }
+        builder.append('\t').append(destPhrase).append('\t').append(getDestEntityId()).append('\t').append(destNER);
+        return builder.toString();
+    }
+}
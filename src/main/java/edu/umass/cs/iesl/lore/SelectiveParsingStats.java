@@ -0,0 +1,64 @@
+package edu.umass.cs.iesl.lore;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts of what the selective parsing filters of {@link CoreNLPAnnotator} kept away from the parser and dcoref.
+ * Shared by all annotators of a pool.
+ *
+ * @author kedarb
+ * @since 12/18/11
+ */
+public class SelectiveParsingStats {
+    final AtomicLong documents = new AtomicLong();
+    final AtomicLong documentsSkipped = new AtomicLong();
+    final AtomicLong sentences = new AtomicLong();
+    final AtomicLong sentencesWithoutEntities = new AtomicLong();
+    final AtomicLong sentencesTooLong = new AtomicLong();
+    final AtomicLong tokens = new AtomicLong();
+    final AtomicLong tokensParsed = new AtomicLong();
+
+    public long getDocuments() {
+        return documents.get();
+    }
+
+    public long getDocumentsSkipped() {
+        return documentsSkipped.get();
+    }
+
+    public long getSentences() {
+        return sentences.get();
+    }
+
+    public long getSentencesWithoutEntities() {
+        return sentencesWithoutEntities.get();
+    }
+
+    public long getSentencesTooLong() {
+        return sentencesTooLong.get();
+    }
+
+    public long getTokens() {
+        return tokens.get();
+    }
+
+    public long getTokensParsed() {
+        return tokensParsed.get();
+    }
+
+    private static String percent(long count, long total) {
+        return String.format("%.1f%%", total == 0 ? 0.0 : 100.0 * count / total);
+    }
+
+    @Override
+    public String toString() {
+        long numDocuments = getDocuments(), numSentences = getSentences(), numTokens = getTokens();
+        return "selective parsing: #docs=" + numDocuments +
+                " #docsNotParsed=" + getDocumentsSkipped() + " (" + percent(getDocumentsSkipped(), numDocuments) + ")" +
+                " #sentences=" + numSentences +
+                " #sentencesWithoutEntities=" + getSentencesWithoutEntities() +
+                " (" + percent(getSentencesWithoutEntities(), numSentences) + ")" +
+                " #sentencesTooLong=" + getSentencesTooLong() + " (" + percent(getSentencesTooLong(), numSentences) + ")" +
+                " #tokensParsed=" + getTokensParsed() + "/" + numTokens + " (" + percent(getTokensParsed(), numTokens) + ")";
+    }
+}
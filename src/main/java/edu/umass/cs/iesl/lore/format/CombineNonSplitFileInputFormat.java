@@ -0,0 +1,42 @@
+package edu.umass.cs.iesl.lore.format;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@link NonSplitFileInputFormat} for corpora of many small documents. Documents are packed into splits of up to
+ * <code>mapred.max.split.size</code> bytes, preferring documents on the same node and rack, so a map task
+ * annotates many documents instead of one.
+ *
+ * @author kedarb
+ * @since 02/26/12
+ */
+public class CombineNonSplitFileInputFormat extends CombineFileInputFormat<Text, Text> {
+    @Override
+    public RecordReader<Text, Text> createRecordReader(InputSplit inputSplit, TaskAttemptContext taskAttemptContext)
+            throws IOException {
+        return new CombineFileRecordReader<Text, Text>((CombineFileSplit) inputSplit, taskAttemptContext,
+                NonSplitRecordReader.class);
+    }
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path filename) {
+        return false;
+    }
+
+    @Override
+    protected List<FileStatus> listStatus(JobContext job) throws IOException {
+        return NonSplitFileInputFormat.listDocuments(super.listStatus(job), job.getConfiguration());
+    }
+}
@@ -0,0 +1,63 @@
+package edu.umass.cs.iesl.lore.format;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One record per .txt document under the input paths (searched recursively): the document path and its text,
+ * see {@link NonSplitRecordReader}. Every document is a split of its own; use
+ * {@link CombineNonSplitFileInputFormat} for corpora of many small documents.
+ *
+ * @author kedarb
+ * @since 10/23/11
+ */
+public class NonSplitFileInputFormat extends FileInputFormat<Text, Text> {
+    public static final String DOCUMENT_EXTENSION = ".txt";
+
+    @Override
+    public RecordReader<Text, Text> createRecordReader(InputSplit inputSplit, TaskAttemptContext taskAttemptContext)
+            throws IOException, InterruptedException {
+        return new NonSplitRecordReader();
+    }
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path filename) {
+        return false;
+    }
+
+    @Override
+    protected List<FileStatus> listStatus(JobContext job) throws IOException {
+        return listDocuments(super.listStatus(job), job.getConfiguration());
+    }
+
+    /**
+     * @return the documents among the files and under the directories
+     */
+    static List<FileStatus> listDocuments(List<FileStatus> statuses, Configuration conf) throws IOException {
+        List<FileStatus> documents = new ArrayList<FileStatus>();
+        for (FileStatus status : statuses) addDocuments(status, conf, documents);
+        return documents;
+    }
+
+    private static void addDocuments(FileStatus status, Configuration conf, List<FileStatus> documents)
+            throws IOException {
+        if (status.isDir()) {
+            FileSystem fs = status.getPath().getFileSystem(conf);
+            for (FileStatus child : fs.listStatus(status.getPath())) addDocuments(child, conf, documents);
+        } else if (status.getPath().getName().endsWith(DOCUMENT_EXTENSION)) {
+            documents.add(status);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package edu.umass.cs.iesl.lore.format;
+
+import edu.umass.cs.iesl.lore.PackedCorpusWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+
+/**
+ * Reads a whole file as a single record. The key is the path of the file without scheme and authority, so it
+ * matches the file path the local extractors use. The value is the text read the way the extractors read a
+ * document file: ISO-8859-1, with lines joined by \n. The file is read in one bulk read of its length.
+ *
+ * @author kedarb
+ * @since 10/23/11
+ */
+public class NonSplitRecordReader extends RecordReader<Text, Text> {
+    private Path path = null;
+    private long length = 0;
+    private Configuration conf = null;
+    private Text key = null;
+    private Text value = null;
+    private boolean done = false;
+
+    public NonSplitRecordReader() {
+    }
+
+    /**
+     * Reads file number index of a combined split, see {@link CombineNonSplitFileInputFormat}.
+     */
+    public NonSplitRecordReader(CombineFileSplit split, TaskAttemptContext context, Integer index) {
+        path = split.getPath(index);
+        length = split.getLength(index);
+    }
+
+    @Override
+    public void initialize(InputSplit inputSplit, TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        if (inputSplit instanceof FileSplit) {
+            FileSplit split = (FileSplit) inputSplit;
+            path = split.getPath();
+            length = split.getLength();
+        }
+        conf = context.getConfiguration();
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+        if (done) return false;
+        if (length > Integer.MAX_VALUE) throw new IOException("Document too large: " + path);
+        byte[] data = new byte[(int) length];
+        FSDataInputStream fileIn = path.getFileSystem(conf).open(path);
+        try {
+            IOUtils.readFully(fileIn, data, 0, data.length);
+        } finally {
+            fileIn.close();
+        }
+        key = new Text(path.toUri().getPath());
+        value = new Text(PackedCorpusWriter.normalize(new String(data, "ISO-8859-1")));
+        done = true;
+        return true;
+    }
+
+    @Override
+    public Text getCurrentKey() throws IOException, InterruptedException {
+        return key;
+    }
+
+    @Override
+    public Text getCurrentValue() throws IOException, InterruptedException {
+        return value;
+    }
+
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+        return done ? 1.0f : 0.0f;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
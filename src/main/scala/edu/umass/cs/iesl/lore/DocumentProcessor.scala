@@ -0,0 +1,45 @@
+package edu.umass.cs.iesl.lore
+
+import org.riedelcastro.nurupo.Util
+import java.io.File
+import io.{Codec, Source}
+
+/**
+ * A job over a corpus: a directory of .txt documents or a packed corpus (see PackedCorpusWriter), whose documents
+ * are handed out by index and sliced from the mapped data file by the workers.
+ *
+ * @author kedar
+ */
+
+trait DocumentProcessor extends ParallelProcessor {
+
+  import JobCenter._
+
+  def inputDirname: String
+
+  def outputPrefix: String
+
+  def inputJob = Job(new File(inputDirname), outputPrefix)
+
+  def generateWork(job: Job) =
+    if (job.inputFile.getName.endsWith(PackedCorpusReader.EXTENSION)) {
+      val corpus = new PackedCorpusReader(job.inputFile)
+      logger.info("Reading " + corpus.size + " documents from packed corpus " + job.inputFile.getPath)
+      Iterator.range(0, corpus.size).map(Work(_, corpus))
+    } else Util.files(job.inputFile).filter(_.getName.endsWith(".txt")).toIterator.map(Work(_))
+
+  // the id of a document: the absolute path of a document file or the id in the packed corpus
+  def documentId(input: Any, inputParams: Any): String = input match {
+    case inputFile: File => inputFile.getAbsolutePath
+    case docIndex: Int => inputParams.asInstanceOf[PackedCorpusReader].getDocId(docIndex)
+  }
+
+  // the lines of a document file joined by \n, or a document of a packed corpus (stored that way)
+  def readDocument(input: Any, inputParams: Any): String = input match {
+    case inputFile: File => {
+      val source = Source.fromFile(inputFile, Codec.ISO8859.name())
+      try source.getLines().mkString("\n") finally source.close()
+    }
+    case docIndex: Int => inputParams.asInstanceOf[PackedCorpusReader].getText(docIndex)
+  }
+}
@@ -1,49 +1,177 @@
 package edu.umass.cs.iesl.lore
 
-import org.riedelcastro.nurupo.Util
 import java.io.{PrintWriter, File}
-import io.{Codec, Source}
 import scala.collection.JavaConversions._
+import java.util.{UUID, Properties}
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * @author kedar
  */
 
-trait MentionPatternExtractor extends ParallelProcessor {
-  val annotator = new CoreNLPAnnotator
+trait MentionPatternExtractor extends DocumentProcessor {
+  // stanford corenlp pipeline is not thread-safe, so each worker checks out its own annotator
+  lazy val annotatorPool = {
+    val pool = CoreNLPAnnotatorPool.getInstance(numWorkers, annotatorOptions)
+    pool.setMaxAbandoned(maxAbandonedDocuments)
+    pool
+  }
+
+  // annotator options taken from the configuration
+  def annotatorOptions: Properties = {
+    val options = new Properties
+    for (key <- Seq(CoreNLPAnnotator.ANNOTATION_CACHE_DIR, CoreNLPAnnotator.SELECTIVE_PARSING,
+      CoreNLPAnnotator.MAX_PARSE_SENTENCE_LENGTH, CoreNLPAnnotator.COREF_WINDOW_SENTENCES,
+      CoreNLPAnnotator.PIPELINE_METRICS)) {
+      val value = Conf.get[String](key, "")
+      if (value.length > 0) options.setProperty(key, value)
+    }
+    options
+  }
 
-  import JobCenter._
+  // tsv: one row per pattern written to the worker's output file
+  // binary: MentionPatternBinaryWriter files (.lmp) next to them, see MentionPatternBinaryReader to get tsv back
+  lazy val outputFormat = Conf.get[String]("output-format", "tsv")
 
-  def inputJob = Job(new File(inputDirname), outputPrefix)
+  def binaryOutput = outputFormat == "binary"
 
   override def debugEvery = 10
 
-  // stanford corenlp pipeline is not thread-safe!!
-  override def numWorkers = 1
+  override def run = {
+    val outputParams = super.run
+    if (annotatorOptions.getProperty(CoreNLPAnnotator.SELECTIVE_PARSING, "false").toBoolean)
+      logger.info(annotatorPool.getSelectiveParsingStats.toString)
+    if (nearDuplicates != null) {
+      // the duplicates would have cost about as much per word as the documents that were annotated
+      val annotatedWords = nearDuplicates.getNumWords - nearDuplicates.getDuplicateWords
+      val savedSecs = nearDuplicates.getDuplicateWords * (extractNanos.get / 1e9) / math.max(1L, annotatedWords)
+      logger.info(nearDuplicates + " estimated annotation time saved=" + "%.1f".format(savedSecs) + " secs")
+    }
+    outputParams
+  }
 
-  def generateWork(job: Job) = Util.files(job.inputFile).filter(_.getName.endsWith(".txt")).toIterator.map(Work(_))
+  // seconds a document may spend in the annotator before it is abandoned (0 for no limit)
+  lazy val documentTimeout = Conf.get[Int]("document-timeout", 0)
 
-  def inputDirname: String
+  // abandoned documents that may run in the background at a time, see CoreNLPAnnotatorPool
+  lazy val maxAbandonedDocuments = Conf.get[Int]("max-abandoned-documents", CoreNLPAnnotatorPool.DEFAULT_MAX_ABANDONED)
 
-  def outputPrefix: String
-}
+  // documents that timed out are appended to the skip list and not retried by later runs
+  lazy val skipList = {
+    val path = Conf.get[String]("skip-list", "")
+    if (path.length > 0) new DocumentSkipList(new File(path)) else null
+  }
 
-case class EntityMentionPatternExtractor(inputDirname: String, outputPrefix: String) extends MentionPatternExtractor {
-  def name = "entityMentionExtractor"
+  def withAnnotator[T](filePath: String)(f: CoreNLPAnnotator => T): T =
+    annotatorPool.run(filePath, documentTimeout * 1000L, new CoreNLPAnnotatorPool.Task[T] {
+      def run(annotator: CoreNLPAnnotator) = f(annotator)
+    })
+
+  // documents whose word shingles are at least this similar to an earlier document are not annotated (0 to
+  // annotate all documents); they are appended to the duplicates file as [docId] [earlier docId] [similarity]
+  lazy val dedupThreshold = Conf.get[String]("dedup-threshold", "0").toDouble
+
+  lazy val nearDuplicates = if (dedupThreshold > 0) new NearDuplicateIndex(dedupThreshold) else null
+
+  lazy val duplicates =
+    new DocumentSkipList(new File(Conf.get[String]("duplicates-file", outputPrefix + ".duplicates.tsv")))
+
+  private val extractNanos = new AtomicLong
 
   def doWork(input: Any, inputParams: Any, partialOutputWriter: PrintWriter, partialOutputParams: Any) {
-    val inputFile = input.asInstanceOf[File]
-    val source = Source.fromFile(inputFile, Codec.ISO8859.name())
+    val filePath = documentId(input, inputParams)
+    if (skipList != null && skipList.contains(filePath)) {
+      logger.info("Skipping file[" + filePath + "] on the skip list")
+      return
+    }
     try {
-      val filePath = inputFile.getAbsolutePath
-      val docText = source.getLines().mkString("\n")
-      for (line <- annotator.getEntityMentionPatterns(filePath, docText)) partialOutputWriter.println(line)
+      val readStart = System.nanoTime
+      val docText = readDocument(input, inputParams)
+      if (metrics != null) metrics.recordStage("read", System.nanoTime - readStart)
+      val signature = if (nearDuplicates != null) nearDuplicates.signature(docText) else null
+      val duplicate = if (signature != null) nearDuplicates.find(signature) else null
+      if (duplicate != null) {
+        try {
+          duplicates.add(filePath, duplicate.docId + "\t" + "%.3f".format(duplicate.similarity))
+        } catch {
+          case de: Exception => logger.error("Cannot add file[" + filePath + "] to the duplicates: " + de.getMessage)
+        }
+      } else {
+        val extractStart = System.nanoTime
+        extract(filePath, docText, partialOutputWriter, partialOutputParams)
+        extractNanos.addAndGet(System.nanoTime - extractStart)
+        // only documents whose patterns were written can stand in for their duplicates
+        if (signature != null) nearDuplicates.insert(filePath, signature)
+      }
     } catch {
+      case e: DocumentTimeoutException => {
+        logger.warn("Abandoned file[" + filePath + "] after " + documentTimeout + " secs (#abandoned still running=" +
+          annotatorPool.getNumAbandoned + ")")
+        if (skipList != null) {
+          try {
+            skipList.add(filePath, "timeout=" + documentTimeout + "s")
+          } catch {
+            case se: Exception => logger.error("Cannot add file[" + filePath + "] to the skip list: " +
+              se.getMessage)
+          }
+        }
+      }
       case e: Exception => {
-        logger.error("Error while processing file[" + inputFile.getAbsolutePath + "]: " + e.getMessage)
+        logger.error("Error while processing file[" + filePath + "]: " + e.getMessage)
       }
     }
-    source.close()
+  }
+
+  // extract patterns from a single document
+  def extract(filePath: String, docText: String, partialOutputWriter: PrintWriter, partialOutputParams: Any)
+
+  def newBinaryOutputWriter(outputPrefix: String): MentionPatternBinaryWriter = {
+    val outputFile = new File(outputPrefix, UUID.randomUUID().toString + MentionPatternBinaryReader.EXTENSION)
+    logger.info("Worker writing to path " + outputFile.getPath)
+    outputFile.getParentFile.mkdirs()
+    new MentionPatternBinaryWriter(outputFile)
+  }
+
+  // an additional per-worker output under the prefix in the configured format
+  def newPatternOutput(outputPrefix: String): Any =
+    if (binaryOutput) newBinaryOutputWriter(outputPrefix) else newPartialOutputWriter(outputPrefix)
+
+  def closePatternOutput(output: Any) {
+    output match {
+      case writer: MentionPatternBinaryWriter => writer.close()
+      case writer: PrintWriter => writer.close()
+      case _ =>
+    }
+  }
+
+  def writePatterns(patterns: java.util.List[_ <: MentionPattern], output: Any) {
+    output match {
+      case writer: MentionPatternBinaryWriter => writer.writeAll(patterns)
+      case writer: PrintWriter => for (pattern <- patterns) writer.println(pattern.toTSV)
+    }
+  }
+
+  // with binary output, workers write to a binary writer instead of their output file, which is not created
+  override def writesPartialOutput = !binaryOutput
+
+  override def newOutputParams(isMaster: Boolean): Any =
+    if (isMaster || !binaryOutput) null else newBinaryOutputWriter(outputPrefix)
+
+  override def finishOutputParams(partialOutputParams: Any) {
+    closePatternOutput(partialOutputParams)
+  }
+
+  def patternOutput(partialOutputWriter: PrintWriter, partialOutputParams: Any): Any =
+    if (partialOutputParams != null) partialOutputParams else partialOutputWriter
+
+}
+
+case class EntityMentionPatternExtractor(inputDirname: String, outputPrefix: String) extends MentionPatternExtractor {
+  def name = "entityMentionExtractor"
+
+  def extract(filePath: String, docText: String, partialOutputWriter: PrintWriter, partialOutputParams: Any) {
+    writePatterns(withAnnotator(filePath)(_.getEntityPatterns(filePath, docText)),
+      patternOutput(partialOutputWriter, partialOutputParams))
   }
 }
 
@@ -56,19 +184,9 @@ object ExtractEntityMentionPatterns {
 case class RelationMentionPatternExtractor(inputDirname: String, outputPrefix: String) extends MentionPatternExtractor {
   def name = "relationMentionExtractor"
 
-  def doWork(input: Any, inputParams: Any, partialOutputWriter: PrintWriter, partialOutputParams: Any) {
-    val inputFile = input.asInstanceOf[File]
-    val source = Source.fromFile(inputFile, Codec.ISO8859.name())
-    try {
-      val filePath = inputFile.getAbsolutePath
-      val docText = source.getLines().mkString("\n")
-      for (line <- annotator.getRelationMentionPatterns(filePath, docText)) partialOutputWriter.println(line)
-    } catch {
-      case e: Exception => {
-        logger.error("Error while processing file[" + inputFile.getAbsolutePath + "]: " + e.getMessage)
-      }
-    }
-    source.close()
+  def extract(filePath: String, docText: String, partialOutputWriter: PrintWriter, partialOutputParams: Any) {
+    writePatterns(withAnnotator(filePath)(_.getRelationPatterns(filePath, docText)),
+      patternOutput(partialOutputWriter, partialOutputParams))
   }
 }
 
@@ -76,4 +194,41 @@ object ExtractRelationMentionPatterns {
   def main(args: Array[String]) {
     RelationMentionPatternExtractor(args(0), args(1)).run
   }
-}
\ No newline at end of file
+}
+
+/**
+ * Annotates every document once and writes entity patterns under outputPrefix and relation patterns under
+ * relationOutputPrefix (one file per worker each).
+ */
+case class EntityRelationMentionPatternExtractor(inputDirname: String, outputPrefix: String, relationOutputPrefix: String)
+  extends MentionPatternExtractor {
+  def name = "entityRelationMentionExtractor"
+
+  // workers get a second output for relation patterns
+  override def newOutputParams(isMaster: Boolean): Any =
+    if (isMaster) null else PatternOutputs(super.newOutputParams(isMaster), newPatternOutput(relationOutputPrefix))
+
+  override def finishOutputParams(partialOutputParams: Any) {
+    if (partialOutputParams != null) {
+      val outputs = partialOutputParams.asInstanceOf[PatternOutputs]
+      closePatternOutput(outputs.entityOutput)
+      closePatternOutput(outputs.relationOutput)
+    }
+  }
+
+  def extract(filePath: String, docText: String, partialOutputWriter: PrintWriter, partialOutputParams: Any) {
+    val patterns = withAnnotator(filePath)(_.getMentionPatterns(filePath, docText))
+    val outputs = partialOutputParams.asInstanceOf[PatternOutputs]
+    writePatterns(patterns.entityPatterns, patternOutput(partialOutputWriter, outputs.entityOutput))
+    writePatterns(patterns.relationPatterns, outputs.relationOutput)
+  }
+}
+
+// entity output is null when the worker's output file is used
+case class PatternOutputs(entityOutput: Any, relationOutput: Any)
+
+object ExtractEntityRelationMentionPatterns {
+  def main(args: Array[String]) {
+    EntityRelationMentionPatternExtractor(args(0), args(1), args(2)).run
+  }
+}
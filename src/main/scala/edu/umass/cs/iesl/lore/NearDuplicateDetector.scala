@@ -0,0 +1,44 @@
+package edu.umass.cs.iesl.lore
+
+import java.io.PrintWriter
+
+/**
+ * Finds the near-duplicate documents of a corpus before it is annotated: every worker writes rows of
+ * [docId] [earlier docId] [similarity] under outputPrefix. The rows can be concatenated into the skip-list of the
+ * mention pattern extractors, which then skip the duplicates (see also dedup-threshold to do both in one job).
+ *
+ * @author kedar
+ */
+
+case class NearDuplicateDetector(inputDirname: String, outputPrefix: String) extends DocumentProcessor {
+  def name = "nearDuplicateDetector"
+
+  override def debugEvery = 1000
+
+  // the threshold of the extractors if they dedup inline, 0.9 otherwise
+  lazy val threshold = {
+    val configured = Conf.get[String]("dedup-threshold", "0").toDouble
+    if (configured > 0) configured else 0.9
+  }
+
+  lazy val nearDuplicates = new NearDuplicateIndex(threshold)
+
+  def doWork(input: Any, inputParams: Any, partialOutputWriter: PrintWriter, partialOutputParams: Any) {
+    val docId = documentId(input, inputParams)
+    val duplicate = nearDuplicates.add(docId, readDocument(input, inputParams))
+    if (duplicate != null)
+      partialOutputWriter.println(docId + "\t" + duplicate.docId + "\t" + "%.3f".format(duplicate.similarity))
+  }
+
+  override def run = {
+    val outputParams = super.run
+    logger.info(nearDuplicates.toString)
+    outputParams
+  }
+}
+
+object DetectNearDuplicates {
+  def main(args: Array[String]) {
+    NearDuplicateDetector(args(0), args(1)).run
+  }
+}
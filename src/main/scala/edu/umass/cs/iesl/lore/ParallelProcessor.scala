@@ -8,6 +8,10 @@ import akka.dispatch.Dispatchers
 import System.{currentTimeMillis => now}
 import org.riedelcastro.nurupo.HasLogger
 import java.io.{PrintWriter, File}
+import java.util.UUID
+import java.util.concurrent.{Semaphore, LinkedBlockingDeque}
+import java.util.concurrent.atomic.{AtomicLong, AtomicInteger, AtomicBoolean}
+import collection.mutable.ArrayBuffer
 
 /**
  * @author kedar
@@ -60,27 +64,74 @@ trait ParallelProcessor extends HasLogger {
   // merge partial output parameters
   def merge(outputParams: Any, partialOutputParams: Any) {}
 
+  // release partial output parameters once a worker is done (e.g. close additional writers)
+  def finishOutputParams(partialOutputParams: Any) {}
+
+  // whether workers get a partial output file (otherwise doWork is passed a null writer)
+  def writesPartialOutput: Boolean = true
+
+  // open a partial output file under the prefix: make directory if necessary
+  def newPartialOutputWriter(outputPrefix: String, id: String = UUID.randomUUID().toString): PrintWriter = {
+    val outputFilename = outputPrefix + System.getProperty("file.separator") + id
+    val outputFile = new File(outputFilename)
+    logger.info("Worker writing to path " + outputFilename)
+    outputFile.getParentFile.mkdirs()
+    new PrintWriter(outputFile)
+  }
+
   // number of workers (can be overridden say for thread-unsafe processing)
   def numWorkers: Int = math.min(Conf.get[Int]("max-workers", 1), Runtime.getRuntime.availableProcessors())
 
+  // execution engine: "actor" (one message per work item) or "batch" (batched, work-stealing threads)
+  def engine: String = Conf.get[String]("parallel-engine", "actor")
+
+  // batch engine: number of work items per batch
+  def batchSize: Int = Conf.get[Int]("batch-size", 64)
+
+  // batch engine: maximum number of queued batches per worker before generateWork is throttled
+  def queuedBatchesPerWorker: Int = Conf.get[Int]("queued-batches-per-worker", 4)
+
+  // whether PipelineMetrics are collected (and registered with JMX); nothing is logged or recorded otherwise
+  def metricsEnabled: Boolean = Conf.get[String]("pipeline-metrics", "false").toBoolean
+
+  lazy val metrics = if (metricsEnabled) PipelineMetrics.getInstance else null
+
+  // seconds between PipelineMetrics summaries logged while the job runs (0 to disable)
+  def metricsLogInterval: Int = Conf.get[Int]("metrics-log-interval", 60)
+
+  private lazy val metricsLogIntervalMillis = metricsLogInterval * 1000L
+  private lazy val lastMetricsLog = new AtomicLong(now)
+
+  def logMetrics() {
+    if (metrics != null) logger.info(metrics.getSummary)
+  }
+
+  // called after every work item: logs the summary if the interval has passed
+  def maybeLogMetrics() {
+    val last = lastMetricsLog.get
+    if (metrics != null && metricsLogIntervalMillis > 0 && now - last >= metricsLogIntervalMillis &&
+      lastMetricsLog.compareAndSet(last, now))
+      logMetrics()
+  }
+
   class Worker(val outputPrefix: String) extends Actor with HasLogger {
     self.dispatcher = Dispatchers.newThreadBasedDispatcher(self)
     
-    val partialOutputWriter = {
-      val outputFilename = outputPrefix + System.getProperty("file.separator") + self.uuid.toString
-      val outputFile = new File(outputFilename)
-      // make directory if necessary
-      logger.info("Worker writing to path " + outputFilename)
-      outputFile.getParentFile.mkdirs()
-      new PrintWriter(outputFile)
-    }
+    val partialOutputWriter = if (writesPartialOutput) newPartialOutputWriter(outputPrefix, self.uuid.toString) else null
     // initialize partial output
     val partialOutputParams = newOutputParams()
+    val workerStats = if (metrics != null) metrics.worker(parallelName + "-worker-" + self.uuid) else null
 
     protected def receive = {
       case work: Work => {
-        // process the work
-        doWork(work.input, work.inputParams, partialOutputWriter, partialOutputParams)
+        // process the work: a failed item must still be answered, or the master waits forever
+        try {
+          doWork(work.input, work.inputParams, partialOutputWriter, partialOutputParams)
+        } catch {
+          case e: Exception => logger.error("Error while processing " + work.input + ": " + e.getMessage)
+        }
+        // a worker has one item at a time, so there is no queue to report
+        if (workerStats != null) workerStats.itemDone()
         // reply to master
         self reply WorkDone
       }
@@ -91,7 +142,8 @@ trait ParallelProcessor extends HasLogger {
     }
 
     override def postStop() {
-      partialOutputWriter.close()
+      if (partialOutputWriter != null) partialOutputWriter.close()
+      finishOutputParams(partialOutputParams)
     }
   }
 
@@ -126,6 +178,7 @@ trait ParallelProcessor extends HasLogger {
         if (nrOfDones % debugEvery == 0) {
           logger.info("Master received #dones=" + nrOfDones + "/#messages=" + nrOfMessages)
         }
+        maybeLogMetrics()
         if (workIterator.hasNext) {
           self reply workIterator.next()
           nrOfMessages += 1
@@ -150,6 +203,16 @@ trait ParallelProcessor extends HasLogger {
   }
 
   def run = {
+    val outputParams = engine match {
+      case "actor" => runActors
+      case "batch" => runBatched
+      case other => throw new IllegalArgumentException("Unknown parallel-engine: " + other)
+    }
+    if (metricsLogInterval > 0) logMetrics()
+    outputParams
+  }
+
+  def runActors = {
     preRun()
 
     // create master
@@ -174,4 +237,116 @@ trait ParallelProcessor extends HasLogger {
     // return merged output parameters
     outputParams
   }
-}
\ No newline at end of file
+
+  /**
+   * Worker thread of the batch engine: takes batches from the head of its own deque and, when that is empty,
+   * steals from the tail of the other workers' deques. Every queued batch adds a permit to queued, and so does
+   * the end of production once per worker: a worker blocks on queued while there is nothing to take, and stops
+   * once production has ended and it gets a permit but finds no batch.
+   */
+  class BatchWorker(val id: Int, deques: IndexedSeq[LinkedBlockingDeque[Seq[Work]]], slots: Semaphore,
+                    queued: Semaphore, producing: AtomicBoolean, nrOfDones: AtomicInteger, outputPrefix: String)
+    extends Thread(parallelName + "-worker-" + id) with HasLogger {
+    val partialOutputParams = newOutputParams()
+    val workerStats = if (metrics != null) metrics.worker(getName) else null
+    var nrOfBatches = 0
+    var nrOfSteals = 0
+
+    def nextBatch(): Seq[Work] = {
+      var batch = deques(id).pollFirst()
+      var k = 1
+      while (batch == null && k < deques.size) {
+        batch = deques((id + k) % deques.size).pollLast()
+        if (batch != null) nrOfSteals += 1
+        k += 1
+      }
+      batch
+    }
+
+    override def run() {
+      val partialOutputWriter = if (writesPartialOutput) newPartialOutputWriter(outputPrefix) else null
+      try {
+        var done = false
+        while (!done) {
+          queued.acquire()
+          var batch = nextBatch()
+          // while producing, a permit stands for a batch, which a scan can miss if it lands in a deque the
+          // scan has passed while other workers take the rest
+          while (batch == null && producing.get) batch = nextBatch()
+          if (batch != null) {
+            slots.release()
+            nrOfBatches += 1
+            for (work <- batch) {
+              try {
+                doWork(work.input, work.inputParams, partialOutputWriter, partialOutputParams)
+              } catch {
+                case e: Exception => logger.error("Error while processing " + work.input + ": " + e.getMessage)
+              }
+              if (workerStats != null) workerStats.itemDone(deques(id).size * batchSize)
+              val dones = nrOfDones.incrementAndGet()
+              if (dones % debugEvery == 0) logger.info("Workers finished #dones=" + dones)
+              maybeLogMetrics()
+            }
+          } else {
+            done = true
+          }
+        }
+      } finally {
+        if (partialOutputWriter != null) partialOutputWriter.close()
+        finishOutputParams(partialOutputParams)
+      }
+    }
+  }
+
+  def runBatched = {
+    preRun()
+    val start = now
+    val nrOfWorkers = numWorkers
+    val deques = Vector.fill(nrOfWorkers)(new LinkedBlockingDeque[Seq[Work]]())
+    // bounds the number of queued batches: generateWork is only pulled as fast as the workers go
+    val slots = new Semaphore(nrOfWorkers * queuedBatchesPerWorker)
+    val queued = new Semaphore(0)
+    val producing = new AtomicBoolean(true)
+    val nrOfDones = new AtomicInteger(0)
+    val job = inputJob
+    val workers = Vector.tabulate(nrOfWorkers)(id =>
+      new BatchWorker(id, deques, slots, queued, producing, nrOfDones, job.outputPrefix))
+    logger.info("Starting batch engine with #workers=" + nrOfWorkers + " batchSize=" + batchSize)
+    workers.foreach(_.start())
+
+    // produce batches round-robin over the workers' deques
+    var nrOfMessages = 0
+    var nrOfBatches = 0
+    try {
+      val batch = new ArrayBuffer[Work](batchSize)
+      def enqueue() {
+        slots.acquire()
+        deques(nrOfBatches % nrOfWorkers).offerLast(batch.toList)
+        queued.release()
+        nrOfBatches += 1
+        batch.clear()
+      }
+      for (work <- generateWork(job)) {
+        batch += work
+        nrOfMessages += 1
+        if (batch.size == batchSize) enqueue()
+      }
+      if (batch.size > 0) enqueue()
+    } finally {
+      // wake every worker once more: after the remaining batches, each of them finds nothing and stops
+      producing.set(false)
+      queued.release(nrOfWorkers)
+      workers.foreach(_.join())
+    }
+
+    // merge output params with partials
+    val outputParams = newOutputParams(true)
+    for (worker <- workers) {
+      merge(outputParams, worker.partialOutputParams)
+      logger.info("Worker " + worker.id + " processed #batches=" + worker.nrOfBatches + " (#stolen=" + worker.nrOfSteals + ")")
+    }
+    logger.info("Workers finished #dones=" + nrOfDones.get + "/#messages=" + nrOfMessages + " in #batches=" + nrOfBatches)
+    logger.info("Completed " + parallelName + " in time=" + (now - start) + " millis")
+    outputParams
+  }
+}
@@ -0,0 +1,116 @@
+package edu.umass.cs.iesl.lore
+
+import org.riedelcastro.nurupo.Util
+import java.io.{PrintWriter, File}
+import io.Source
+import scala.collection.JavaConversions._
+
+/**
+ * Aggregates the output of the mention pattern extractors (tsv or binary) into corpus-wide co-occurrence counts:
+ * <ul>
+ * <li>relation-path-counts.tsv: [srcNER] [destNER] [edgeWalk] [count]</li>
+ * <li>entity-dependency-counts.tsv: [entityPhrase] [NER] [dependency] [count]</li>
+ * </ul>
+ * Every worker counts into its own PatternCounters (spilling sorted runs to disk when they grow too large), the
+ * partial counts are merged into the master's counters and the runs are merged at the end.
+ *
+ * @author kedar
+ */
+
+case class PatternCounts(relationPathCounts: PatternCounter, entityDependencyCounts: PatternCounter)
+
+case class PatternAggregator(inputDirname: String, outputPrefix: String) extends ParallelProcessor {
+
+  import JobCenter._
+
+  def name = "patternAggregator"
+
+  def inputJob = Job(new File(inputDirname), outputPrefix)
+
+  override def debugEvery = 100
+
+  // distinct pairs kept in memory per counter (two per worker, two for the master) before spilling a run
+  def maxCountsInMemory = Conf.get[Int]("aggregation-max-counts-in-memory", 1000000)
+
+  // pairs seen fewer times are left out of the final counts
+  def minCount = Conf.get[Int]("aggregation-min-count", 1)
+
+  def runDir = new File(outputPrefix, "runs")
+
+  // workers count into their PatternCounts, so they get no output file of their own
+  override def writesPartialOutput = false
+
+  override def newOutputParams(isMaster: Boolean): Any =
+    PatternCounts(new PatternCounter("relation-paths", runDir, maxCountsInMemory),
+      new PatternCounter("entity-dependencies", runDir, maxCountsInMemory))
+
+  def generateWork(job: Job) = Util.files(job.inputFile).filter(_.length > 0).toIterator.map(Work(_))
+
+  def doWork(input: Any, inputParams: Any, partialOutputWriter: PrintWriter, partialOutputParams: Any) {
+    val inputFile = input.asInstanceOf[File]
+    val counts = partialOutputParams.asInstanceOf[PatternCounts]
+    if (inputFile.getName.endsWith(MentionPatternBinaryReader.EXTENSION)) {
+      val reader = new MentionPatternBinaryReader(inputFile)
+      try {
+        for (pattern <- reader) count(pattern, counts)
+      } finally {
+        reader.close()
+      }
+    } else {
+      val source = Source.fromFile(inputFile)
+      try {
+        for (line <- source.getLines()) count(line, counts)
+      } finally {
+        source.close()
+      }
+    }
+  }
+
+  def count(pattern: MentionPattern, counts: PatternCounts) {
+    pattern match {
+      case entPattern: EntityMentionPattern =>
+        val entity = entPattern.phrase + "\t" + entPattern.ner
+        for (dependency <- entPattern.dependencies) counts.entityDependencyCounts.add(entity, dependency.toString)
+      case relPattern: RelationMentionPattern =>
+        val nerPair = relPattern.srcNER + "\t" + relPattern.destNER
+        for (edgeWalk <- relPattern.edgeWalks) counts.relationPathCounts.add(nerPair, edgeWalk.mkString)
+    }
+  }
+
+  // rows of EntityMentionPattern.toTSV (5 columns) or RelationMentionPattern.toTSV (8 columns)
+  def count(line: String, counts: PatternCounts) {
+    val columns = line.split("\t")
+    if (columns.length == 5) {
+      val entity = columns(1) + "\t" + columns(3)
+      for (dependency <- columns(4).split("\\|\\|\\|")) counts.entityDependencyCounts.add(entity, dependency)
+    } else if (columns.length == 8) {
+      val nerPair = columns(3) + "\t" + columns(7)
+      for (edgeWalk <- columns(4).split("\\|\\|\\|")) counts.relationPathCounts.add(nerPair, edgeWalk)
+    }
+  }
+
+  override def merge(outputParams: Any, partialOutputParams: Any) {
+    val counts = outputParams.asInstanceOf[PatternCounts]
+    val partialCounts = partialOutputParams.asInstanceOf[PatternCounts]
+    counts.relationPathCounts.merge(partialCounts.relationPathCounts)
+    counts.entityDependencyCounts.merge(partialCounts.entityDependencyCounts)
+  }
+
+  override def run = {
+    val counts = super.run.asInstanceOf[PatternCounts]
+    for ((counter, filename) <- Seq(counts.relationPathCounts -> "relation-path-counts.tsv",
+      counts.entityDependencyCounts -> "entity-dependency-counts.tsv")) {
+      val outputFile = new File(outputPrefix, filename)
+      logger.info("Writing #counts=" + counter.getTotal + " from #runs=" + counter.getNumRuns + " to " + outputFile.getPath)
+      counter.writeCounts(outputFile, minCount)
+    }
+    runDir.delete()
+    counts
+  }
+}
+
+object AggregatePatterns {
+  def main(args: Array[String]) {
+    PatternAggregator(args(0), args(1)).run
+  }
+}
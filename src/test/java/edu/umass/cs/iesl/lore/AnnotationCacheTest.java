@@ -0,0 +1,53 @@
+package edu.umass.cs.iesl.lore;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The annotation cache must never change the output: the patterns of the test corpus must be the same without a
+ * cache, on a cold cache (annotated, then cached) and on a warm one (read back from disk).
+ *
+ * @author kedarb
+ * @since 03/04/12
+ */
+public class AnnotationCacheTest {
+    static List<String> rows(CoreNLPAnnotator annotator, Map<String, String> docs) {
+        List<String> rows = new ArrayList<String>();
+        for (Map.Entry<String, String> doc : docs.entrySet()) {
+            CoreNLPAnnotator.MentionPatterns patterns = annotator.getMentionPatterns(doc.getKey(), doc.getValue());
+            rows.addAll(CoreNLPAnnotator.toTSV(patterns.entityPatterns));
+            rows.addAll(CoreNLPAnnotator.toTSV(patterns.relationPatterns));
+        }
+        return rows;
+    }
+
+    @Test
+    public void cacheDoesNotChangePatterns() throws Exception {
+        Map<String, String> docs = CoreNLPAnnotatorPoolTest.readCorpus();
+        // one annotator for all three runs, so that the models are loaded once
+        CoreNLPAnnotator annotator = new CoreNLPAnnotator();
+        List<String> expected = rows(annotator, docs);
+        assertTrue("no patterns in the test corpus", expected.size() > 0);
+
+        File cacheDir = HadoopMentionPatternExtractorTest.createTempDir();
+        try {
+            annotator.cache = new AnnotationCache(cacheDir, annotator.cacheSignature());
+            assertEquals("cold cache", expected, rows(annotator, docs));
+
+            // a new cache over the same directory, so that every document is read from disk
+            annotator.cache = new AnnotationCache(cacheDir, annotator.cacheSignature());
+            for (String docText : docs.values())
+                assertTrue("document not cached", annotator.cache.get(docText) != null);
+            assertEquals("warm cache", expected, rows(annotator, docs));
+        } finally {
+            HadoopMentionPatternExtractorTest.delete(cacheDir);
+        }
+    }
+}
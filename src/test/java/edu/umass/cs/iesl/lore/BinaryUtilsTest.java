@@ -0,0 +1,37 @@
+package edu.umass.cs.iesl.lore;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author kedarb
+ * @since 03/04/12
+ */
+public class BinaryUtilsTest {
+    @Test
+    public void dictionaryKeepsStringsLongerThan64KB() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 100000) builder.append("Caf\u00e9 \u4e2d\u6587 ");
+        String longString = builder.toString();
+
+        BinaryUtils.StringDictionary dictionary = new BinaryUtils.StringDictionary();
+        dictionary.id("");
+        dictionary.id(longString);
+        dictionary.id("nsubj");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        dictionary.write(new DataOutputStream(bytes));
+
+        String[] strings = BinaryUtils.readStringDictionary(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(4, strings.length);
+        assertEquals("", strings[1]);
+        assertEquals(longString, strings[2]);
+        assertEquals("nsubj", strings[3]);
+    }
+}
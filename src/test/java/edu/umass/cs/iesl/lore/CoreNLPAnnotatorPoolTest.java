@@ -0,0 +1,136 @@
+package edu.umass.cs.iesl.lore;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Annotators checked out of the pool by concurrent workers must give the same patterns as a single worker.
+ *
+ * @author kedarb
+ * @since 03/04/12
+ */
+public class CoreNLPAnnotatorPoolTest {
+    static final int NUM_WORKERS = 2;
+    static final int REPEATS = 3;
+
+    static Map<String, String> readCorpus() throws Exception {
+        File[] files = new File(CoreNLPAnnotatorPoolTest.class.getResource("/corpus").toURI()).listFiles();
+        Arrays.sort(files);
+        Map<String, String> docs = new LinkedHashMap<String, String>();
+        for (File file : files) docs.put(file.getName(), PackedCorpusWriter.readText(file));
+        return docs;
+    }
+
+    static String patterns(CoreNLPAnnotatorPool pool, final String docId, final String docText) throws Exception {
+        return pool.run(docId, 0, new CoreNLPAnnotatorPool.Task<String>() {
+            public String run(CoreNLPAnnotator annotator) {
+                CoreNLPAnnotator.MentionPatterns patterns = annotator.getMentionPatterns(docId, docText);
+                StringBuilder rows = new StringBuilder();
+                for (String row : CoreNLPAnnotator.toTSV(patterns.entityPatterns)) rows.append(row).append('\n');
+                for (String row : CoreNLPAnnotator.toTSV(patterns.relationPatterns)) rows.append(row).append('\n');
+                return rows.toString();
+            }
+        });
+    }
+
+    @Test
+    public void concurrentWorkersMatchSingleWorker() throws Exception {
+        final Map<String, String> docs = readCorpus();
+        final CoreNLPAnnotatorPool pool = new CoreNLPAnnotatorPool(NUM_WORKERS, new Properties());
+
+        // one worker: only one annotator is created
+        Map<String, String> expected = new LinkedHashMap<String, String>();
+        for (String docId : docs.keySet()) expected.put(docId, patterns(pool, docId, docs.get(docId)));
+        assertEquals(1, pool.getCreated());
+        StringBuilder allRows = new StringBuilder();
+        for (String rows : expected.values()) allRows.append(rows);
+        assertTrue("no patterns in the test corpus", allRows.length() > 0);
+
+        // every document several times over, by workers running at the same time
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_WORKERS);
+        try {
+            List<String> docIds = new ArrayList<String>();
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int r = 0; r < REPEATS; r++) {
+                for (final String docId : docs.keySet()) {
+                    docIds.add(docId);
+                    results.add(executor.submit(new Callable<String>() {
+                        public String call() throws Exception {
+                            return patterns(pool, docId, docs.get(docId));
+                        }
+                    }));
+                }
+            }
+            for (int i = 0; i < results.size(); i++)
+                assertEquals(docIds.get(i), expected.get(docIds.get(i)), results.get(i).get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(NUM_WORKERS, pool.getCreated());
+    }
+
+    // a task that, like CoreNLP, does not stop when interrupted
+    static CoreNLPAnnotatorPool.Task<String> sleep(final long millis, final String result) {
+        return new CoreNLPAnnotatorPool.Task<String>() {
+            public String run(CoreNLPAnnotator annotator) {
+                long end = System.currentTimeMillis() + millis;
+                for (long now = System.currentTimeMillis(); now < end; now = System.currentTimeMillis()) {
+                    try {
+                        Thread.sleep(end - now);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                return result;
+            }
+        };
+    }
+
+    @Test
+    public void abandonedDocumentsKeepTheirAnnotatorsUpToTheCap() throws Exception {
+        CoreNLPAnnotatorPool pool = new CoreNLPAnnotatorPool(1, new Properties());
+        pool.setMaxAbandoned(1);
+        try {
+            pool.run("slow", 100, sleep(2000, "slow"));
+            fail("slow document was not abandoned");
+        } catch (DocumentTimeoutException expected) {
+        }
+        assertEquals(1, pool.getNumAbandoned());
+        // the abandoned annotator keeps its place, next to a replacement
+        assertEquals("fast", pool.run("fast", 100, sleep(0, "fast")));
+        assertEquals(2, pool.getCreated());
+        // the cap is reached: a late document is waited for instead of abandoned
+        assertEquals("late", pool.run("late", 100, sleep(300, "late")));
+        assertEquals(2, pool.getCreated());
+
+        // once the abandoned document finishes, the replacement is all that is left
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pool.getNumAbandoned() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(50);
+        assertEquals(0, pool.getNumAbandoned());
+        assertEquals(1, pool.getCreated());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sharedPoolRejectsOtherOptions() {
+        Properties options = new Properties();
+        options.setProperty(CoreNLPAnnotator.MAX_PARSE_SENTENCE_LENGTH, "40");
+        CoreNLPAnnotatorPool.getInstance(1, options);
+        Properties otherOptions = new Properties();
+        otherOptions.setProperty(CoreNLPAnnotator.MAX_PARSE_SENTENCE_LENGTH, "80");
+        CoreNLPAnnotatorPool.getInstance(1, otherOptions);
+    }
+}
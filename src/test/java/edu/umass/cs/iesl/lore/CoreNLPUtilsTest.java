@@ -0,0 +1,73 @@
+package edu.umass.cs.iesl.lore;
+
+import edu.stanford.nlp.dcoref.CorefChain;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CorefCoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.CoreMap;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Edge walks over the compact AnnotatedDocument view, as built and as read back from the annotation cache format,
+ * must be those over the CoreNLP objects.
+ *
+ * @author kedarb
+ * @since 03/04/12
+ */
+public class CoreNLPUtilsTest {
+    static AnnotatedDocument readBack(AnnotatedDocument document) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        document.write(out);
+        out.close();
+        return AnnotatedDocument.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void edgeWalksMatchCoreNLPObjects() throws Exception {
+        CoreNLPAnnotator annotator = new CoreNLPAnnotator();
+        int numWalks = 0;
+        for (Map.Entry<String, String> doc : CoreNLPAnnotatorPoolTest.readCorpus().entrySet()) {
+            Annotation annotation = annotator.runPipeline(doc.getValue());
+            List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+            Map<Integer, CorefChain> graph = annotation.get(CorefCoreAnnotations.CorefChainAnnotation.class);
+            // in the order of AnnotatedDocument.chains
+            List<CorefChain> corefChains = new ArrayList<CorefChain>(graph.values());
+            AnnotatedDocument document = AnnotatedDocument.fromAnnotation(annotation);
+            AnnotatedDocument cached = readBack(document);
+            assertEquals(corefChains.size(), document.chains.length);
+
+            for (int src = 0; src < corefChains.size(); src++) {
+                List<CorefChain.CorefMention> srcMentions = corefChains.get(src).getCorefMentions();
+                for (int dest = 0; dest < corefChains.size(); dest++) {
+                    List<CorefChain.CorefMention> destMentions = corefChains.get(dest).getCorefMentions();
+                    for (int i = 0; i < srcMentions.size(); i++) {
+                        for (int j = 0; j < destMentions.size(); j++) {
+                            List<String> expected = CoreNLPUtils.getEdgeWalk(srcMentions.get(i),
+                                    destMentions.get(j), sentences, true);
+                            List<String> actual = CoreNLPUtils.getEdgeWalk(document.chains[src].mentions[i],
+                                    document.chains[dest].mentions[j], document, true);
+                            assertEquals(doc.getKey(), expected, actual);
+                            assertEquals(doc.getKey(), expected, CoreNLPUtils.getEdgeWalk(
+                                    cached.chains[src].mentions[i], cached.chains[dest].mentions[j], cached, true));
+                            if (!expected.isEmpty()) numWalks++;
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue("no edge walks in the test corpus", numWalks > 0);
+    }
+}
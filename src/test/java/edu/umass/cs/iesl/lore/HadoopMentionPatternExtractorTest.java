@@ -0,0 +1,140 @@
+package edu.umass.cs.iesl.lore;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The map-only job, run with the local job runner, must write the rows the annotator gives for every .txt document
+ * under the input directory, with combined and with per-document splits.
+ *
+ * @author kedarb
+ * @since 03/04/12
+ */
+public class HadoopMentionPatternExtractorTest {
+    static File createTempDir() throws IOException {
+        File dir = File.createTempFile("lore-hadoop", "");
+        if (!dir.delete() || !dir.mkdir()) throw new IOException("Could not create " + dir);
+        return dir;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+
+    static void copy(File from, File to) throws IOException {
+        FileInputStream in = new FileInputStream(from);
+        try {
+            FileOutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buffer = new byte[1 << 16];
+                int n;
+                while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Copies the test corpus into the directory, half of it into a subdirectory, next to a file that is not a
+     * document.
+     * @return the documents
+     */
+    static List<File> writeInput(File dir) throws Exception {
+        File[] files = new File(HadoopMentionPatternExtractorTest.class.getResource("/corpus").toURI()).listFiles();
+        Arrays.sort(files);
+        File subDir = new File(dir, "sub");
+        subDir.mkdir();
+        List<File> documents = new ArrayList<File>();
+        for (int i = 0; i < files.length; i++) {
+            File document = new File(i % 2 == 0 ? dir : subDir, files[i].getName());
+            copy(files[i], document);
+            documents.add(document);
+        }
+        Writer notes = new OutputStreamWriter(new FileOutputStream(new File(dir, "notes.ldr")), "UTF-8");
+        try {
+            notes.write("not a document\n");
+        } finally {
+            notes.close();
+        }
+        return documents;
+    }
+
+    static List<String> readOutput(File dir) throws IOException {
+        List<String> rows = new ArrayList<String>();
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        for (File file : files) {
+            if (!file.getName().startsWith("part-")) continue;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) rows.add(line);
+            } finally {
+                reader.close();
+            }
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
+    static List<String> runJob(File input, File output, boolean combineInput) throws Exception {
+        Configuration conf = new Configuration();
+        HadoopMentionPatternExtractor.setLocal(conf);
+        conf.setBoolean(HadoopMentionPatternExtractor.COMBINE_INPUT, combineInput);
+        Job job = HadoopMentionPatternExtractor.newJob(conf, "both", input.getAbsolutePath(),
+                output.getAbsolutePath());
+        assertTrue("job failed", job.waitForCompletion(false));
+        assertEquals(0, job.getCounters().findCounter(
+                HadoopMentionPatternExtractor.Counters.FAILED_DOCUMENTS).getValue());
+        return readOutput(output);
+    }
+
+    @Test
+    public void localJobWritesTheRowsOfEveryDocument() throws Exception {
+        File dir = createTempDir();
+        try {
+            File input = new File(dir, "input");
+            input.mkdir();
+            List<File> documents = writeInput(input);
+
+            // the job shares the annotator of this JVM, and keys documents by their path
+            CoreNLPAnnotator annotator = HadoopMentionPatternExtractor.PatternMapper.getAnnotator(new Configuration());
+            List<String> expected = new ArrayList<String>();
+            for (File document : documents) {
+                CoreNLPAnnotator.MentionPatterns patterns = annotator.getMentionPatterns(document.getAbsolutePath(),
+                        PackedCorpusWriter.readText(document));
+                expected.addAll(CoreNLPAnnotator.toTSV(patterns.entityPatterns));
+                expected.addAll(CoreNLPAnnotator.toTSV(patterns.relationPatterns));
+            }
+            Collections.sort(expected);
+            assertTrue("no patterns in the test corpus", expected.size() > 0);
+
+            assertEquals(expected, runJob(input, new File(dir, "combined"), true));
+            assertEquals(expected, runJob(input, new File(dir, "per-document"), false));
+        } finally {
+            delete(dir);
+        }
+    }
+}
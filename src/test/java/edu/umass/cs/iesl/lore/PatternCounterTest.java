@@ -0,0 +1,139 @@
+package edu.umass.cs.iesl.lore;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts spilled to many small runs, merged across counters and merged back in several passes must be those of
+ * a plain in-memory count.
+ *
+ * @author kedarb
+ * @since 03/04/12
+ */
+public class PatternCounterTest {
+    static final String[] KEYS = {"PERSON\tORGANIZATION", "PERSON\tLOCATION", "ORGANIZATION\tPERSON", "PERSON"};
+    static final int NUM_PAIRS = 4000;
+    // small enough for every worker to spill hundreds of runs
+    static final int MAX_COUNTS_IN_MEMORY = 8;
+
+    /**
+     * Counts the same random pairs into the counter and the map.
+     */
+    static void count(PatternCounter counter, Map<List<String>, Long> expected, Random random, int numPairs) {
+        for (int i = 0; i < numPairs; i++) {
+            String key = KEYS[random.nextInt(KEYS.length)];
+            // skewed, so that some pairs are rare and others frequent
+            String value = "-nsubj->" + random.nextInt(1 + random.nextInt(200));
+            counter.add(key, value);
+            List<String> pair = Arrays.asList(key, value);
+            Long count = expected.get(pair);
+            expected.put(pair, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * @return the rows writeCounts should write for the counts, sorted by (key, value)
+     */
+    static List<String> rows(Map<List<String>, Long> counts, long minCount) {
+        List<List<String>> pairs = new ArrayList<List<String>>(counts.keySet());
+        Collections.sort(pairs, new Comparator<List<String>>() {
+            public int compare(List<String> a, List<String> b) {
+                int cmp = a.get(0).compareTo(b.get(0));
+                return cmp != 0 ? cmp : a.get(1).compareTo(b.get(1));
+            }
+        });
+        List<String> rows = new ArrayList<String>();
+        for (List<String> pair : pairs) {
+            long count = counts.get(pair);
+            if (count >= minCount) rows.add(pair.get(0) + "\t" + pair.get(1) + "\t" + count);
+        }
+        return rows;
+    }
+
+    static List<String> readRows(File file) throws IOException {
+        List<String> rows = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) rows.add(line);
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    /**
+     * Two workers and the master count, and the workers' counts are merged into the master's.
+     */
+    static PatternCounter countAndMerge(File runDir, int maxCountsInMemory, Map<List<String>, Long> expected) {
+        Random random = new Random(0);
+        PatternCounter master = new PatternCounter("test", runDir, maxCountsInMemory);
+        for (int w = 0; w < 2; w++) {
+            PatternCounter worker = new PatternCounter("test", runDir, maxCountsInMemory);
+            count(worker, expected, random, NUM_PAIRS);
+            master.merge(worker);
+            assertEquals(0, worker.getTotal());
+            assertEquals(0, worker.getNumRuns());
+        }
+        count(master, expected, random, NUM_PAIRS / 10);
+        assertEquals(NUM_PAIRS * 2 + NUM_PAIRS / 10, master.getTotal());
+        return master;
+    }
+
+    @Test
+    public void mergedRunsMatchInMemoryCounts() throws Exception {
+        File dir = HadoopMentionPatternExtractorTest.createTempDir();
+        try {
+            File runDir = new File(dir, "runs");
+            Map<List<String>, Long> expected = new HashMap<List<String>, Long>();
+            PatternCounter counter = countAndMerge(runDir, MAX_COUNTS_IN_MEMORY, expected);
+            assertTrue("too few runs for a multi-pass merge", counter.getNumRuns() > PatternCounter.MAX_OPEN_RUNS);
+
+            File output = new File(dir, "counts.tsv");
+            counter.writeCounts(output, 1);
+            assertEquals(rows(expected, 1), readRows(output));
+            assertEquals("runs left behind", 0, runDir.listFiles().length);
+        } finally {
+            HadoopMentionPatternExtractorTest.delete(dir);
+        }
+    }
+
+    @Test
+    public void minCountLeavesOutRarePairs() throws Exception {
+        File dir = HadoopMentionPatternExtractorTest.createTempDir();
+        try {
+            Map<List<String>, Long> expected = new HashMap<List<String>, Long>();
+            // with runs
+            PatternCounter counter = countAndMerge(new File(dir, "runs"), MAX_COUNTS_IN_MEMORY, expected);
+            File output = new File(dir, "counts.tsv");
+            counter.writeCounts(output, 5);
+            List<String> expectedRows = rows(expected, 5);
+            assertTrue("min count leaves out nothing", expectedRows.size() < expected.size());
+            assertEquals(expectedRows, readRows(output));
+
+            // in memory only
+            counter = countAndMerge(new File(dir, "runs"), Integer.MAX_VALUE, new HashMap<List<String>, Long>());
+            assertEquals(0, counter.getNumRuns());
+            counter.writeCounts(output, 5);
+            assertEquals(expectedRows, readRows(output));
+        } finally {
+            HadoopMentionPatternExtractorTest.delete(dir);
+        }
+    }
+}